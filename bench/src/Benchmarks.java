@@ -0,0 +1,285 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks times the simulation and genetic algorithm hot paths, so changes to the engine can be compared against
+ * a repeatable baseline.
+ *
+ * Every benchmark is warmed up before it is measured, and reports its throughput along with the bytes allocated per
+ * operation, read from the JVM's per-thread allocation counter. Benchmarks that play games report games per second
+ * and bytes per game. Everything runs on the calling thread so the allocation counter sees all of the work.
+ *
+ * Usage:
+ * Run main with no arguments to run every benchmark, or with the names of benchmarks (or name prefixes) to run
+ * only those, for example "playGame findBestPlay".
+ */
+public class Benchmarks {
+
+    // How long each benchmark warms up and is measured for
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final long MEASURE_NANOS = 5_000_000_000L;
+
+    private static final String[] TEST_CARDS = {
+            "Mon's Goblin Raiders",
+            "Grizzly Bears",
+            "Elephant",
+            "Shock",
+            "Incinerate",
+            "Mountain",
+            "Goblin Guide",
+            "Lightning Bolt",
+            "Jackal Pup",
+            "Hill Giant",
+            "Mogg Flunkies",
+            "Flame Rift",
+    };
+
+    private static final String[] BORING_CARDS = {
+            "Mon's Goblin Raiders",
+            "Grizzly Bears",
+            "Great Stable Stag",
+            "Shock",
+            "Incinerate",
+            "Mountain",
+    };
+
+    // Results are added here so the JIT can't remove the work being measured
+    private static volatile long sink;
+
+    /**
+     * A single operation to time.
+     */
+    private interface Operation {
+        /**
+         * Runs the operation once.
+         * @return The number of games played by the operation, or 0 if it doesn't play games.
+         */
+        long run();
+    }
+
+    public static void main(String[] args) {
+        Random rand = new Random(1);
+        CardCatalog testCatalog = new CardCatalog(onlyKnownCards(TEST_CARDS));
+        CardCatalog boringCatalog = new CardCatalog(onlyKnownCards(BORING_CARDS));
+
+        System.out.printf("%-40s %14s %14s %14s %14s%n", "Benchmark", "ops/s", "games/s", "B/op", "B/game");
+
+        RankedDeck deck = new RankedDeck(testCatalog);
+        Game game = new Game(rand);
+        game.setDeck(deck);
+
+        if (shouldRun(args, "playGame")) {
+            run("playGame", () -> {
+                game.reset();
+                sink += game.playGame();
+                return 1;
+            });
+        }
+
+        if (shouldRun(args, "batchGame")) {
+            BatchGame batch = new BatchGame(rand);
+            batch.setDeck(deck);
+
+            run("BatchGame.play (256 games)", () -> {
+                batch.play(256);
+                sink += batch.getWinTurnCounts()[Game.MAX_TURN];
+                return 256;
+            });
+        }
+
+        for (int handSize = 1; handSize <= 12; handSize++) {
+            if (shouldRun(args, "findBestPlay")) {
+                runFindBestPlay(testCatalog, rand, handSize);
+            }
+        }
+
+        if (shouldRun(args, "mulligan")) {
+            run("Player.mulligan", () -> {
+                game.reset();
+                sink += game.player.mulligan();
+                return 0;
+            });
+        }
+
+        Deck shuffleDeck = new Deck(new ArrayList<>(deck.getCardList()));
+
+        if (shouldRun(args, "shuffle")) {
+            run("Deck.shuffle", () -> {
+                shuffleDeck.shuffle(rand);
+                sink += shuffleDeck.get(0).cost;
+                return 0;
+            });
+        }
+
+        if (shouldRun(args, "draw")) {
+            run("Deck.draw (20 cards)", () -> {
+                shuffleDeck.reset();
+                shuffleDeck.shuffle(rand);
+
+                for (int i = 0; i < 20; i++) {
+                    sink += shuffleDeck.draw().cost;
+                }
+                return 0;
+            });
+        }
+
+        Genetics genetics = newGenetics(testCatalog);
+        List<RankedDeck> generation = genetics.getGeneration();
+
+        if (shouldRun(args, "breed")) {
+            run("Genetics.breed", () -> {
+                RankedDeck parent1 = generation.get(rand.nextInt(generation.size()));
+                RankedDeck parent2 = generation.get(rand.nextInt(generation.size()));
+                sink += genetics.breed(parent1, parent2).size();
+                return 0;
+            });
+        }
+
+        if (shouldRun(args, "mutate")) {
+            RankedDeck mutated = deck.copy();
+            run("Genetics.mutate", () -> {
+                sink += genetics.mutate(mutated).size();
+                return 0;
+            });
+        }
+
+        if (shouldRun(args, "evaluateGeneration")) {
+            runEvaluateGeneration("evaluateGeneration (test)", testCatalog);
+            runEvaluateGeneration("evaluateGeneration (boring)", boringCatalog);
+        }
+
+        System.out.println("sink: " + sink);
+    }
+
+    /**
+     * Times findBestPlay with a hand of random non-land cards, and one mana per card in the hand. Most cards cost more
+     * than one, so the search has to choose which cards to cast.
+     */
+    private static void runFindBestPlay(CardCatalog catalog, Random rand, int handSize) {
+        Game game = new Game(rand);
+        game.enemy.life = Integer.MAX_VALUE;
+        game.player.hand.clear();
+
+        for (int i = 0; i < handSize; i++) {
+            game.player.hand.add(catalog.getRandomNonland());
+        }
+
+        run("Game.findBestPlay (hand " + handSize + ")", () -> {
+            game.player.mana = handSize;
+            sink += game.findBestPlay().size();
+            return 0;
+        });
+    }
+
+    /**
+     * Times the evaluation of a whole generation at a low run count, on one thread and without a fitness cache, so
+     * every deck plays every game.
+     */
+    private static void runEvaluateGeneration(String name, CardCatalog catalog) {
+        final int runCount = 50;
+        Genetics genetics = newGenetics(catalog);
+        genetics.setThreadCount(1);
+        genetics.setFitnessCache(null);
+
+        run(name, () -> {
+            genetics.evaluateGeneration(runCount);
+            return (long) runCount * genetics.getGenerationSize();
+        });
+    }
+
+    private static Genetics newGenetics(CardCatalog catalog) {
+        return new Genetics(catalog);
+    }
+
+    /**
+     * Warms up and measures an operation, then prints its results.
+     * @param name The name of the benchmark.
+     * @param operation The operation to time.
+     */
+    private static void run(String name, Operation operation) {
+        measure(operation, WARMUP_NANOS);
+        long[] result = measure(operation, MEASURE_NANOS);
+
+        long ops = result[0];
+        long games = result[1];
+        long bytes = result[2];
+        double seconds = result[3] / 1e9;
+
+        System.out.printf("%-40s %14.1f %14s %14.1f %14s%n",
+                name,
+                ops / seconds,
+                games > 0 ? String.format("%.1f", games / seconds) : "-",
+                (double) bytes / ops,
+                games > 0 ? String.format("%.1f", (double) bytes / games) : "-");
+    }
+
+    /**
+     * Runs an operation repeatedly for a length of time.
+     * @return The operations run, games played, bytes allocated and nanoseconds taken.
+     */
+    private static long[] measure(Operation operation, long nanos) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long ops = 0;
+        long games = 0;
+        int batch = 1;
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long elapsed = 0;
+
+        while (elapsed < nanos) {
+            long batchStart = elapsed;
+
+            for (int i = 0; i < batch; i++) {
+                games += operation.run();
+                ops++;
+            }
+            elapsed = System.nanoTime() - start;
+
+            // grow the batch until it takes about a millisecond, so fast operations aren't dominated by nanoTime
+            if (elapsed - batchStart < 1_000_000L) {
+                batch *= 2;
+            }
+        }
+
+        long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+        return new long[]{ops, games, bytes, elapsed};
+    }
+
+    private static boolean shouldRun(String[] args, String name) {
+        if (args.length == 0) {
+            return true;
+        }
+
+        for (String arg : args) {
+            if (name.startsWith(arg) || arg.startsWith(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Filters out card names that aren't in the full catalog, so a catalog can still be built from a list that
+     * names cards that have been removed.
+     */
+    private static String[] onlyKnownCards(String[] names) {
+        CardCatalog all = new CardCatalog();
+        List<String> known = new ArrayList<>();
+
+        for (String name : names) {
+            try {
+                all.getCardIndex(name);
+                known.add(name);
+            } catch (RuntimeException e) {
+                System.out.println("Skipping unknown card '" + name + "'");
+            }
+        }
+
+        return known.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,488 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * BatchGame plays many games of one deck at once, a turn at a time, with the state of every game kept in primitive
+ * arrays indexed by game.
+ *
+ * A card is just the index of its kind of card in the deck, and the library and hand of each game are slices of
+ * one int array, so a turn is a loop over a few arrays instead of a walk through lists of Card objects. Creatures
+ * in play only matter through their total attack: every creature untaps each turn, and only creatures cast this
+ * turn without haste can't attack, so the battlefield is one number per game.
+ *
+ * The games follow exactly the same rules as Game, and use their Random in the same order, so a batch of games
+ * gives the same win turns as playing the games one after another with Game and the same seed. Like a Game's deck,
+ * each game shuffles lazily as it draws (see Deck.draw), with a generator of its own that is seeded when the game is
+ * dealt, so playing the games in lockstep doesn't change which cards each one draws.
+ *
+ * A sampled batch is recorded in SimulationMetrics as that many games each taking the batch's time per game, since
+ * the games of a batch are played together and have no times of their own.
+ *
+ * Usage:
+ * Create a BatchGame with a Random like a Game, and pass it to RankedDeck.playGames.
+ */
+class BatchGame {
+
+    private static final int OPENING_HAND_SIZE = 7;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final Random rand;
+    // the generator each game's draws and mulligans come from
+    private final PairedRandom[] drawRands;
+    private final int batchSize;
+    private final PlaySearch playSearch = new PlaySearch();
+
+    // the kinds of cards in the deck
+    private int types;
+    // each kind's catalog index, which the seeded shuffle keys cards on
+    private int[] typeIndexes = new int[0];
+    private int[] typeCosts = new int[0];
+    private int[] typeTurnDamages = new int[0];
+    private int[] typeAttacks = new int[0];
+    private boolean[] typeLands = new boolean[0];
+
+    // the deck in its saved order, as card kinds
+    private int deckSize;
+    private int[] savedDeck = new int[0];
+
+    // the library of game g is library[g * deckSize + cursor[g]] up to library[(g + 1) * deckSize - 1], which is
+    // shuffled as it is drawn (see drawCard), and the cards before the cursor are the ones drawn
+    private int[] library = new int[0];
+    private int[] cursor;
+    // the hand of game g is hand[g * deckSize] up to hand[g * deckSize + handSize[g] - 1]
+    private int[] hand = new int[0];
+    private int[] handSize;
+    private int[] life;
+    private int[] lands;
+    private int[] boardAttack;
+    private int[] winTurns;
+    private int[] active;
+
+    // the seeded shuffle's heap of keys for the cards of game g not drawn yet, like Deck.shuffle(long, boolean):
+    // keyHeap[g * deckSize] up to keyHeap[g * deckSize + keyCount[g] - 1], and each key's card in keyCards
+    private long[] keyHeap = new long[0];
+    private int[] keyCards = new int[0];
+    private int[] keyCount;
+    private int[] candidates = new int[0];
+
+    private final int[] winTurnCounts = new int[DeckStats.WIN_TURNS];
+
+    // one batch in SimulationMetrics.SAMPLE_INTERVAL is timed, and its phases in every game
+    private int batchesUntilSample = 1;
+    private boolean sampling;
+    private long mulliganNanos;
+    private long findBestPlayNanos;
+    private long attackNanos;
+
+    /**
+     * Creates a BatchGame that plays up to 256 games at a time.
+     * @param rand The Random that unseeded games' shuffles are seeded from.
+     */
+    BatchGame(Random rand){
+        this(rand, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a BatchGame.
+     * @param rand The Random that unseeded games' shuffles are seeded from.
+     * @param batchSize The most games played at a time.
+     */
+    BatchGame(Random rand, int batchSize){
+        this.rand = rand;
+        this.batchSize = batchSize;
+
+        drawRands = new PairedRandom[batchSize];
+        for(int g = 0; g < batchSize; g++){
+            drawRands[g] = new PairedRandom();
+        }
+
+        cursor = new int[batchSize];
+        keyCount = new int[batchSize];
+        handSize = new int[batchSize];
+        life = new int[batchSize];
+        lands = new int[batchSize];
+        boardAttack = new int[batchSize];
+        winTurns = new int[batchSize];
+        active = new int[batchSize];
+    }
+
+    /**
+     * Sets the deck the games are played with. The cards are in the same order as the deck's card list, which is the
+     * order a Game's deck is shuffled from.
+     * @param deck The deck.
+     */
+    void setDeck(RankedDeck deck){
+        CardCatalog catalog = deck.cardCatalog;
+        int[] sortedIndexes = catalog.getSortedIndexes();
+
+        types = 0;
+        deckSize = deck.size();
+
+        if(typeIndexes.length < sortedIndexes.length){
+            typeIndexes = new int[sortedIndexes.length];
+            typeCosts = new int[sortedIndexes.length];
+            typeTurnDamages = new int[sortedIndexes.length];
+            typeAttacks = new int[sortedIndexes.length];
+            typeLands = new boolean[sortedIndexes.length];
+        }
+        if(savedDeck.length < deckSize){
+            savedDeck = new int[deckSize];
+            candidates = new int[deckSize];
+        }
+        if(library.length < batchSize * deckSize){
+            library = new int[batchSize * deckSize];
+            hand = new int[batchSize * deckSize];
+            keyHeap = new long[batchSize * deckSize];
+            keyCards = new int[batchSize * deckSize];
+        }
+
+        int position = 0;
+        for(int index : sortedIndexes){
+            int count = deck.getCount(index);
+
+            if(count == 0){
+                continue;
+            }
+
+            Card card = catalog.getCardAt(index);
+            typeIndexes[types] = index;
+            typeCosts[types] = card.cost;
+            typeTurnDamages[types] = PlaySearch.getTurnDamage(card);
+            typeAttacks[types] = PlaySearch.getAttack(card);
+            typeLands[types] = card.type == Card.CardType.Land;
+
+            for(int i = 0; i < count; i++){
+                savedDeck[position++] = types;
+            }
+            types++;
+        }
+    }
+
+    /**
+     * Plays games, shuffling with this BatchGame's Random. Afterwards, getWinTurnCounts holds the results.
+     * @param gameCount The number of games to play.
+     */
+    void play(int gameCount){
+        play(0, gameCount, 0, false, false, null);
+    }
+
+    /**
+     * Plays seeded games, like RankedDeck.playGames with common random numbers: the seed of each game comes from
+     * its number. Afterwards, getWinTurnCounts holds the results.
+     * @param firstGame The number of the first game.
+     * @param gameCount The number of games to play.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @param gameWinTurns If not null, gets the win turn of each game, at the index of its number.
+     */
+    void play(int firstGame, int gameCount, long seed, boolean antithetic, int[] gameWinTurns){
+        play(firstGame, gameCount, seed, antithetic, true, gameWinTurns);
+    }
+
+    private void play(int firstGame, int gameCount, long seed, boolean antithetic, boolean seeded,
+                      int[] gameWinTurns){
+        Arrays.fill(winTurnCounts, 0);
+
+        for(int start = 0; start < gameCount; start += batchSize){
+            int games = Math.min(batchSize, gameCount - start);
+            long sampleStart = startSample();
+
+            for(int g = 0; g < games; g++){
+                int number = firstGame + start + g;
+
+                if(!seeded){
+                    deal(g, 0, false, false);
+                }
+                else if(antithetic){
+                    deal(g, PairedRandom.mix(seed, number / 2), number % 2 == 1, true);
+                }
+                else{
+                    deal(g, PairedRandom.mix(seed, number), false, true);
+                }
+            }
+
+            playTurns(games);
+
+            if(sampling){
+                sampling = false;
+                SimulationMetrics.getInstance().recordSamples(
+                        games, System.nanoTime() - sampleStart, mulliganNanos, findBestPlayNanos, attackNanos);
+            }
+
+            for(int g = 0; g < games; g++){
+                winTurnCounts[winTurns[g]]++;
+            }
+            if(gameWinTurns != null){
+                System.arraycopy(winTurns, 0, gameWinTurns, firstGame + start, games);
+            }
+        }
+    }
+
+    /**
+     * Starts timing the next batch, if it is the one to sample.
+     * @return The time the batch started, if it is sampled.
+     */
+    private long startSample(){
+        if(--batchesUntilSample > 0){
+            return 0;
+        }
+
+        batchesUntilSample = SimulationMetrics.SAMPLE_INTERVAL;
+        sampling = true;
+        mulliganNanos = 0;
+        findBestPlayNanos = 0;
+        attackNanos = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * @return The number of games won on each turn, indexed by turn.
+     */
+    int[] getWinTurnCounts(){
+        return winTurnCounts;
+    }
+
+    /**
+     * Shuffles a game's library, draws its opening hand and takes its mulligans, like Game.reset and the start of
+     * Game.playGame.
+     */
+    private void deal(int g, long seed, boolean antithetic, boolean seeded){
+        int offset = g * deckSize;
+        System.arraycopy(savedDeck, 0, library, offset, deckSize);
+        cursor[g] = 0;
+        handSize[g] = 0;
+        life[g] = Enemy.STARTING_LIFE;
+        lands[g] = 0;
+        boardAttack[g] = 0;
+
+        if(seeded){
+            drawRands[g].reseed(seed, antithetic);
+            shuffleByKey(g, seed, antithetic);
+        }
+        else{
+            drawRands[g].reseed(rand.nextLong(), false);
+            keyCount[g] = 0;
+        }
+
+        draw(g, OPENING_HAND_SIZE);
+
+        long mulliganStart = sampling ? System.nanoTime() : 0;
+
+        int landsInHand = countLandsInHand(g);
+        while(handSize[g] > 5 && (landsInHand >= 5 || landsInHand < 1)){
+            mulligan(g);
+            landsInHand = countLandsInHand(g);
+        }
+
+        if(sampling){
+            mulliganNanos += System.nanoTime() - mulliganStart;
+        }
+    }
+
+    /**
+     * Shuffles a whole library the way Deck.shuffle(long, boolean) shuffles a deck, into a heap of keys that the
+     * draws take the lowest of.
+     */
+    private void shuffleByKey(int g, long seed, boolean reversed){
+        int offset = g * deckSize;
+        int copy = 0;
+
+        for(int i = 0; i < deckSize; i++){
+            int type = library[offset + i];
+            copy = i > 0 && library[offset + i - 1] == type ? copy + 1 : 0;
+
+            long key = PairedRandom.mix(seed, ((long) typeIndexes[type] << 20) | copy);
+            if(reversed){
+                key = ~key;
+            }
+
+            keyHeap[offset + i] = (key & ~0xFFFFFL) | i;
+            keyCards[offset + i] = type;
+        }
+
+        Deck.heapify(keyHeap, offset, deckSize);
+        keyCount[g] = deckSize;
+    }
+
+    private void draw(int g, int count){
+        int offset = g * deckSize;
+
+        for(int i = 0; i < count && cursor[g] < deckSize; i++){
+            hand[offset + handSize[g]++] = drawCard(g, offset);
+        }
+    }
+
+    /**
+     * Draws the top card of a game's library, the way Deck.draw does.
+     */
+    private int drawCard(int g, int offset){
+        int top = offset + cursor[g]++;
+
+        if(keyCount[g] > 0){
+            long key = Deck.popMin(keyHeap, offset, keyCount[g]--);
+            library[top] = keyCards[offset + (int) (key & 0xFFFFF)];
+        }
+        else{
+            int pick = top + drawRands[g].nextInt(offset + deckSize - top);
+            int swap = library[top];
+            library[top] = library[pick];
+            library[pick] = swap;
+        }
+
+        return library[top];
+    }
+
+    /**
+     * Puts the cards left in a game's heap of keys in its library, in order.
+     */
+    private void finishKeyedShuffle(int g, int offset){
+        for(int i = offset + cursor[g]; keyCount[g] > 0; i++){
+            long key = Deck.popMin(keyHeap, offset, keyCount[g]--);
+            library[i] = keyCards[offset + (int) (key & 0xFFFFF)];
+        }
+    }
+
+    private int countLandsInHand(int g){
+        int offset = g * deckSize;
+        int count = 0;
+
+        for(int i = 0; i < handSize[g]; i++){
+            if(typeLands[hand[offset + i]]){
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Puts the hand back in the library, shuffles the library and draws one card fewer, like Player.mulligan. The
+     * hand is every card drawn so far, which are still in the library before the cursor, so moving the cursor back
+     * puts them back, and the draws shuffle the library again.
+     */
+    private void mulligan(int g){
+        int offset = g * deckSize;
+        finishKeyedShuffle(g, offset);
+        cursor[g] = 0;
+
+        int newHandSize = handSize[g] - 1;
+        handSize[g] = 0;
+
+        draw(g, newHandSize);
+    }
+
+    /**
+     * Plays every game's turns in lockstep until each game is won or reaches Game.MAX_TURN.
+     */
+    private void playTurns(int games){
+        int activeCount = games;
+        for(int g = 0; g < games; g++){
+            active[g] = g;
+        }
+
+        for(int turn = 1; activeCount > 0; turn++){
+            if(turn > Game.MAX_TURN){
+                for(int i = 0; i < activeCount; i++){
+                    winTurns[active[i]] = Game.MAX_TURN;
+                }
+                break;
+            }
+
+            int stillActive = 0;
+
+            for(int i = 0; i < activeCount; i++){
+                int g = active[i];
+                playTurn(g, turn);
+
+                if(life[g] > 0){
+                    active[stillActive++] = g;
+                }
+                else{
+                    winTurns[g] = turn;
+                }
+            }
+
+            activeCount = stillActive;
+        }
+    }
+
+    /**
+     * Plays one turn of one game, like Game.playTurn.
+     */
+    private void playTurn(int g, int turn){
+        int offset = g * deckSize;
+
+        if(turn > 1){
+            draw(g, 1);
+        }
+
+        // play the first land in hand
+        for(int i = 0; i < handSize[g]; i++){
+            if(typeLands[hand[offset + i]]){
+                removeFromHand(g, i);
+                lands[g]++;
+                break;
+            }
+        }
+
+        long searchStart = sampling ? System.nanoTime() : 0;
+        int mana = lands[g];
+        int candidateCount = 0;
+        playSearch.clear();
+
+        for(int i = 0; i < handSize[g]; i++){
+            int type = hand[offset + i];
+
+            if(!typeLands[type] && typeCosts[type] <= mana){
+                candidates[candidateCount++] = type;
+                playSearch.add(typeCosts[type], typeTurnDamages[type], typeAttacks[type]);
+            }
+        }
+
+        playSearch.search(mana, PlaySearch.Rank.Turn);
+
+        if(life[g] - playSearch.getChosenTurnDamage() - boardAttack[g] > 0){
+            playSearch.search(mana, PlaySearch.Rank.Overall);
+        }
+
+        for(int c = 0; c < candidateCount; c++){
+            if(playSearch.isChosen(c)){
+                removeFirstFromHand(g, candidates[c]);
+            }
+        }
+
+        if(sampling){
+            long attackStart = System.nanoTime();
+            findBestPlayNanos += attackStart - searchStart;
+            attack(g);
+            attackNanos += System.nanoTime() - attackStart;
+        }
+        else{
+            attack(g);
+        }
+    }
+
+    private void attack(int g){
+        // spells and creatures with haste deal their damage now, and the creatures already in play attack
+        life[g] -= playSearch.getChosenTurnDamage() + boardAttack[g];
+        boardAttack[g] += playSearch.getChosenAttack();
+    }
+
+    private void removeFromHand(int g, int position){
+        int offset = g * deckSize;
+        int last = --handSize[g];
+
+        System.arraycopy(hand, offset + position + 1, hand, offset + position, last - position);
+    }
+
+    private void removeFirstFromHand(int g, int type){
+        int offset = g * deckSize;
+
+        for(int i = 0; i < handSize[g]; i++){
+            if(hand[offset + i] == type){
+                removeFromHand(g, i);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * Battlefield holds the creatures a player has in play.
+ *
+ * The creatures' attack is kept in an array, and whether each is tapped or summoning sick in bitsets, so the game
+ * never walks a list of creatures: untapping everything is a bitset clear, attacking taps every creature at once,
+ * and the attack of the creatures that can attack is kept as a running total.
+ * The Creature objects are only kept for printing.
+ */
+class Battlefield {
+
+    private int size;
+    private Creature[] creatures = new Creature[16];
+    private int[] attacks = new int[16];
+    // bit i of the word i / 64 is set if creature i is tapped, or summoning sick
+    private long[] tapped = new long[1];
+    private long[] sick = new long[1];
+
+    private int totalAttack;
+    // the attack of the creatures that are neither tapped nor summoning sick
+    private int availableAttack;
+
+    /**
+     * Puts a creature into play. It is summoning sick, unless it has haste.
+     * @param creature The creature.
+     */
+    void add(Creature creature){
+        if(size == attacks.length){
+            creatures = Arrays.copyOf(creatures, size * 2);
+            attacks = Arrays.copyOf(attacks, size * 2);
+        }
+        if(size == tapped.length * Long.SIZE){
+            tapped = Arrays.copyOf(tapped, tapped.length * 2);
+            sick = Arrays.copyOf(sick, sick.length * 2);
+        }
+
+        creatures[size] = creature;
+        attacks[size] = creature.attack;
+        totalAttack += creature.attack;
+
+        if(creature.hasAbility(Creature.Ability.Haste)){
+            availableAttack += creature.attack;
+        }
+        else{
+            sick[size >>> 6] |= 1L << size;
+        }
+
+        size++;
+    }
+
+    /**
+     * Untaps every creature, and every creature stops being summoning sick.
+     */
+    void untapAll(){
+        int words = getWordCount();
+
+        for(int i = 0; i < words; i++){
+            tapped[i] = 0;
+            sick[i] = 0;
+        }
+
+        availableAttack = totalAttack;
+    }
+
+    /**
+     * Taps every creature that can attack.
+     * @return The total attack of the creatures tapped.
+     */
+    int attackWithAll(){
+        int damage = availableAttack;
+        int words = getWordCount();
+
+        for(int i = 0; i < words; i++){
+            // every creature that isn't summoning sick is tapped now
+            tapped[i] = ~sick[i];
+        }
+        if((size & 63) != 0){
+            tapped[words - 1] &= (1L << size) - 1;
+        }
+
+        availableAttack = 0;
+        return damage;
+    }
+
+    /**
+     * @return The total attack of the creatures that can attack.
+     */
+    int getAvailableAttack(){
+        return availableAttack;
+    }
+
+    /**
+     * Removes every creature.
+     */
+    void clear(){
+        Arrays.fill(creatures, 0, size, null);
+        Arrays.fill(tapped, 0, getWordCount(), 0);
+        Arrays.fill(sick, 0, getWordCount(), 0);
+        size = 0;
+        totalAttack = 0;
+        availableAttack = 0;
+    }
+
+    /**
+     * @return The number of creatures in play.
+     */
+    int size(){
+        return size;
+    }
+
+    int getAttack(int i){
+        return attacks[i];
+    }
+
+    boolean isTapped(int i){
+        return (tapped[i >>> 6] & (1L << i)) != 0;
+    }
+
+    boolean isSick(int i){
+        return (sick[i >>> 6] & (1L << i)) != 0;
+    }
+
+    boolean canAttack(int i){
+        return !isTapped(i) && !isSick(i);
+    }
+
+    private int getWordCount(){
+        return (size + 63) >>> 6;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder("[");
+
+        for(int i = 0; i < size; i++){
+            if(i > 0){
+                builder.append(", ");
+            }
+            builder.append(creatures[i].name);
+
+            if(isTapped(i)){
+                builder.append(" (tapped)");
+            }
+            else if(isSick(i)){
+                builder.append(" (sick)");
+            }
+        }
+
+        return builder.append("]").toString();
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Card is the superclass of all cards.
  * Subclasses are card types, such as Creature, Land, or Spell.
@@ -5,6 +7,10 @@
  * Currently, cost is just the converted mana cost of a card, and any land can produce mana for any card.
  * Implementing mana costs to allow for more complex mana bases is on my to do list.
  *
+ * Cards are immutable prototypes: every copy of a card in every deck and game is the same object, taken from the
+ * CardCatalog, and anything that changes during a game, such as whether a creature is tapped, is kept by the game.
+ * Each card gets a unique, dense id when it is created, so card data can be kept in arrays indexed by id.
+ *
  * Also, Card should probably be final, not abstract, since cards can gain/lose card types in magic.
  */
 
@@ -16,18 +22,28 @@ public abstract class Card {
         Land
     }
 
-	String name;
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+	final String name;
 	final CardType type;
-	int cost;
-	boolean tapped;
+	final int cost;
+	final int id;
 
-    protected Card(CardType type){
+    protected Card(CardType type, String name, int cost){
         this.type = type;
+        this.name = name;
+        this.cost = cost;
+        this.id = nextId.getAndIncrement();
+    }
+
+    /**
+     * @return The card's id, from 0 to one less than the number of cards created.
+     */
+    public int getId(){
+        return id;
     }
 
 	public String toString(){
 		return name;
 	}
-
-	public abstract Card copy();
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 import sun.font.CreatedFontTracker;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.security.InvalidParameterException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -13,17 +15,23 @@ import java.util.stream.Collectors;
  * Collection of cards or a string array of card names. The default constructor creates a catalog of all cards.
  * Only cards in the catalog will be returned by methods in this catalog.
  *
- * todo: modify (along with the Card class and subclasses) to use JSON card data.
+ * Catalogs can also be made from MTG JSON card data with fromJson, which imports every card the game can play.
  */
 public class CardCatalog {
 
-	public final Random rand = new Random();
+	// not final, so resuming a run can put back the generator its checkpoint saved
+	public Random rand = new Random();
 	private final List<Card> cards;
     private final List<Card> lands;
 	private final List<Card> nonlands;
+    // Catalog indexes, used by decks that store a count of each card instead of a list of cards.
+    private final Map<String, Integer> cardIndexes = new HashMap<>();
+    private int[] landIndexes;
+    private int[] nonlandIndexes;
+    private int[] sortedIndexes;
 
     // All card data is stored in objects here.
-	private static List<Card> allCards = Arrays.asList(
+	private static final List<Card> allCards = Arrays.asList(
 
 			/***** Creatures *****/
             new Creature(
@@ -137,13 +145,20 @@ public class CardCatalog {
 			)
 	);
 
+    // allCards by name
+    private static final Map<String, Card> allCardsByName = new HashMap<>();
+
+    static {
+        for(Card card : allCards){
+            allCardsByName.put(card.name, card);
+        }
+    }
+
     /**
      * Default constructor which creates a CardCatalog containing all cards.
      */
     public CardCatalog(){
-        cards = allCards;
-        lands = cards.stream().filter(c -> c.type == Card.CardType.Land).collect(Collectors.toList());
-        nonlands = cards.stream().filter(c -> c.type != Card.CardType.Land).collect(Collectors.toList());
+        this(allCards);
     }
 
     /**
@@ -152,8 +167,9 @@ public class CardCatalog {
      */
     public CardCatalog(Collection<Card> cards){
         this.cards = new ArrayList<>(cards);
-        lands = cards.stream().filter(c -> c.type == Card.CardType.Land).collect(Collectors.toList());
-        nonlands = cards.stream().filter(c -> c.type != Card.CardType.Land).collect(Collectors.toList());
+        lands = new ArrayList<>();
+        nonlands = new ArrayList<>();
+        indexCards();
     }
 
 
@@ -162,16 +178,74 @@ public class CardCatalog {
      * @param cardNames An array containing the names of cards to use in the deck.
      */
     public CardCatalog(String[] cardNames){
-
-        this.cards = allCards.stream().filter((o) -> Arrays.asList(cardNames).contains(o.name)).collect(Collectors.toList());
+        this(allCards.stream().filter((o) -> Arrays.asList(cardNames).contains(o.name)).collect(Collectors.toList()));
 
         // make sure that all of the cards are valid
         for(String name : cardNames){
-            getCard(name);
+            getCardIndex(name);
         }
+    }
 
-        lands = cards.stream().filter(c -> c.type == Card.CardType.Land).collect(Collectors.toList());
-        nonlands = cards.stream().filter(c -> c.type != Card.CardType.Land).collect(Collectors.toList());
+    /**
+     * Creates a CardCatalog with the playable cards in a JSON card data file, such as AllCards.json. The first call
+     * writes a snapshot of the imported cards next to the file, which later calls load instead. See JsonCard.
+     * @param jsonPath The path of the JSON card data.
+     * @return A catalog of the playable cards.
+     * @throws IOException If the card data can't be read.
+     */
+    public static CardCatalog fromJson(String jsonPath) throws IOException {
+        return new CardCatalog(JsonCard.load(Paths.get(jsonPath)));
+    }
+
+    /**
+     * Rebuilds the card indexes. Adding or removing cards changes the indexes, so decks stored as card counts
+     * should not be shared across a change to the catalog.
+     */
+    private void indexCards(){
+        cardIndexes.clear();
+        lands.clear();
+        nonlands.clear();
+
+        for(Card card : cards){
+            if(card.type == Card.CardType.Land){
+                lands.add(card);
+            }
+            else{
+                nonlands.add(card);
+            }
+        }
+
+        for(int i = 0; i < cards.size(); i++){
+            cardIndexes.putIfAbsent(cards.get(i).name, i);
+        }
+
+        landIndexes = new int[lands.size()];
+        for(int i = 0; i < landIndexes.length; i++){
+            landIndexes[i] = cardIndexes.get(lands.get(i).name);
+        }
+
+        nonlandIndexes = new int[nonlands.size()];
+        for(int i = 0; i < nonlandIndexes.length; i++){
+            nonlandIndexes[i] = cardIndexes.get(nonlands.get(i).name);
+        }
+
+        // the same order as Deck.sort: lands first, then by name
+        sortedIndexes = cardIndexes.values().stream()
+                .sorted((o1, o2) -> {
+                    Card c1 = cards.get(o1);
+                    Card c2 = cards.get(o2);
+
+                    if(c1.type == Card.CardType.Land && c2.type != Card.CardType.Land){
+                        return -1;
+                    }
+                    else if(c2.type == Card.CardType.Land && c1.type != Card.CardType.Land){
+                        return 1;
+                    }
+
+                    return c1.name.compareTo(c2.name);
+                })
+                .mapToInt(Integer::intValue)
+                .toArray();
     }
 
     /**
@@ -180,6 +254,7 @@ public class CardCatalog {
      */
     public void addCard(Card card){
         cards.add(card);
+        indexCards();
     }
 
     /**
@@ -187,11 +262,13 @@ public class CardCatalog {
      * @param name The name of the card to add.
      */
     public void addCard(String name){
-        cards.add(getCard(name));
+        cards.add(getKnownCard(name));
+        indexCards();
     }
 
     public void removeCard(Card card){
         cards.remove(card);
+        indexCards();
     }
 
     public void removeCard(String name){
@@ -200,6 +277,7 @@ public class CardCatalog {
                 cards.remove(card);
             }
         }
+        indexCards();
     }
 
     /**
@@ -218,48 +296,112 @@ public class CardCatalog {
 	};
 
     /**
-     * Gets a copy of a card from the catalog
+     * Gets a card from the catalog
      * @param name The name of the card to return
-     * @return A new Card object
+     * @return The Card object
      */
 	public Card getCard(String name){
-        return cards.stream()
-                .filter((c) -> c.name.equals(name))
-                .findAny()
-                .orElseThrow(() -> new InvalidParameterException("No card named '" + name + "'"))
-                .copy();
+        return cards.get(getCardIndex(name));
 	}
 
+    /**
+     * Gets one of the cards the game knows about, whether or not it is in a catalog.
+     * @param name The name of the card
+     * @return The Card object
+     */
+    static Card getKnownCard(String name){
+        Card card = allCardsByName.get(name);
+
+        if(card == null){
+            throw new InvalidParameterException("No card named '" + name + "'");
+        }
+
+        return card;
+    }
+
     /**
      * Get a random card from the catalog.
-     * @return A copy of a random Card object
+     * @return A random Card object
      */
 	public Card getRandomCard(){
-		return cards.get(rand.nextInt(cards.size())).copy();
+		return cards.get(rand.nextInt(cards.size()));
 	}
 
     /**
      * Get a random card from a list of supplied cards
      * @param possibleCards A list of possible cards to return
-     * @return A copy of a random card in the supplied list
+     * @return A random card in the supplied list
      */
     public Card getRandomCard(List<Card> possibleCards){
-        return possibleCards.get(rand.nextInt(cards.size())).copy();
+        return possibleCards.get(rand.nextInt(possibleCards.size()));
     }
 
     /**
      * Get a random land card
-     * @return A copy of a random land card
+     * @return A random land card
      */
 	public Card getRandomLand(){
-		return lands.get(rand.nextInt(lands.size())).copy();
+		return lands.get(rand.nextInt(lands.size()));
 	}
 
     /**
      * Get a random non-land card
-     * @return A copy of a random non-land card
+     * @return A random non-land card
      */
 	public Card getRandomNonland(){
-		return nonlands.get(rand.nextInt(nonlands.size())).copy();
+		return nonlands.get(rand.nextInt(nonlands.size()));
 	}
+
+    /**
+     * Gets the catalog index of a card. Indexes run from 0 to getCatalogSize() - 1.
+     * @param name The name of the card
+     * @return The index of the card
+     */
+    public int getCardIndex(String name){
+        Integer index = cardIndexes.get(name);
+
+        if(index == null){
+            throw new InvalidParameterException("No card named '" + name + "'");
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the card at a catalog index.
+     * @param index The index of the card
+     * @return The Card object stored in the catalog
+     */
+    public Card getCardAt(int index){
+        return cards.get(index);
+    }
+
+    /**
+     * @return The index of a random card
+     */
+    public int getRandomCardIndex(){
+        return rand.nextInt(cards.size());
+    }
+
+    /**
+     * @return The index of a random land card
+     */
+    public int getRandomLandIndex(){
+        return landIndexes[rand.nextInt(landIndexes.length)];
+    }
+
+    /**
+     * @return The index of a random non-land card
+     */
+    public int getRandomNonlandIndex(){
+        return nonlandIndexes[rand.nextInt(nonlandIndexes.length)];
+    }
+
+    /**
+     * Gets the card indexes in the order Deck.sort puts cards: lands first, then by name.
+     * @return The sorted card indexes. Do not modify the returned array.
+     */
+    int[] getSortedIndexes(){
+        return sortedIndexes;
+    }
 }
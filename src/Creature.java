@@ -1,10 +1,12 @@
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * The class for Creature Cards.
  *
+ * Whether a creature in play is tapped or summoning sick is kept by the player's Battlefield, not the card.
  */
 public class Creature extends Card {
 
@@ -12,10 +14,9 @@ public class Creature extends Card {
         Haste
     }
 
-    List<Ability> abilities;
-	int attack;
-	int defense;
-    boolean summoningSick;
+    private final Set<Ability> abilities;
+	final int attack;
+	final int defense;
 
     /**
      * Creates a new Creature with no abilities
@@ -25,15 +26,7 @@ public class Creature extends Card {
      * @param defense The card's defense
      */
     public Creature(String name, int cost, int attack, int defense){
-        super(CardType.Creature);
-
-        this.abilities = new ArrayList<>();
-        this.name = name;
-        this.cost = cost;
-        this.attack = attack;
-        this.defense = defense;
-        this.tapped = false;
-        this.summoningSick = true;
+        this(name, cost, attack, defense, Collections.emptySet());
     }
 
     /**
@@ -45,16 +38,7 @@ public class Creature extends Card {
      * @param ability A single creature ability
      */
     public Creature(String name, int cost, int attack, int defense, Ability ability){
-        super(CardType.Creature);
-
-        this.abilities = new ArrayList<>();
-        this.abilities.add(ability);
-        this.name = name;
-        this.cost = cost;
-        this.attack = attack;
-        this.defense = defense;
-        this.tapped = false;
-        this.summoningSick = !hasAbility(Ability.Haste);
+        this(name, cost, attack, defense, Collections.singleton(ability));
     }
 
     /**
@@ -66,36 +50,16 @@ public class Creature extends Card {
      * @param abilities A Collection of the creature's abilities
      */
 	public Creature(String name, int cost, int attack, int defense, Collection<Ability> abilities){
-        super(CardType.Creature);
+        super(CardType.Creature, name, cost);
 
-        if(abilities == null){
-            this.abilities = new ArrayList<>();
+        if(abilities == null || abilities.isEmpty()){
+            this.abilities = Collections.unmodifiableSet(EnumSet.noneOf(Ability.class));
         }
         else{
-            this.abilities = new ArrayList<>(abilities);
+            this.abilities = Collections.unmodifiableSet(EnumSet.copyOf(abilities));
         }
-		this.name = name;
-		this.cost = cost;
 		this.attack = attack;
 		this.defense = defense;
-		this.tapped = false;
-        this.summoningSick = !hasAbility(Ability.Haste);
-    }
-
-    /**
-     * Adds an ability to this creature
-     * @param ability The ability to add
-     */
-    public void addAbility(Ability ability){
-        abilities.add(ability);
-    }
-
-    /**
-     * Removes an ability from this creature
-     * @param ability The ability to remove
-     */
-    public void removeAbility(Ability ability){
-        abilities.remove(ability);
     }
 
     /**
@@ -106,20 +70,4 @@ public class Creature extends Card {
     public boolean hasAbility(Ability ability){
         return abilities.contains(ability);
     }
-
-    /**
-     * Check if this creature can attack
-     * @return True if the creature is able to attack, otherwise false
-     */
-    public boolean canAttack(){
-        return !summoningSick && !tapped;
-    }
-
-    /**
-     * Creates a new copy of this card
-     * @return A copy of this card
-     */
-    public Creature copy(){
-        return new Creature(name, cost, attack, defense, abilities);
-    }
 }
@@ -5,6 +5,10 @@ import java.util.*;
  * The Deck class is mostly a wrapper for a List of Cards.
  *
  * The originalDeck variable is used to convert a deck back to it's original state, since cards will be removed from it.
+ *
+ * Drawing doesn't remove cards from the list. A cursor moves past them instead, so a draw takes constant time, and a
+ * shuffled deck is only shuffled as far as it is drawn (see shuffle). The drawn cards are dropped from the list, and
+ * the rest of the shuffle is finished, only when something other than drawing needs the list.
  */
 public class Deck {
 
@@ -15,6 +19,18 @@ public class Deck {
 	private List<Card> originalDeck;
 	protected List<Card> deck;
     protected CardCatalog cardCatalog;
+    // reused by shuffle(long, boolean), which keeps the keys of the cards not drawn yet as a heap
+    private long[] shuffleKeys = new long[0];
+    private Card[] shuffleCards = new Card[0];
+    private int keyCount;
+    // each card's catalog index plus one, indexed by card id, or 0 if it hasn't been looked up
+    private int[] catalogIndexes = new int[0];
+    // the copies of each card shuffle(long, boolean) has given keys so far, indexed by card id, and 0 between shuffles
+    private int[] copyCounts = new int[0];
+    // the cards before top have been drawn
+    private int top;
+    // set while shuffled by shuffle(Random), which draws each card at random from the cards not drawn yet
+    private Random drawRand;
 
     /**
      * Creates a new, empty deck.
@@ -47,7 +63,8 @@ public class Deck {
      * @param deck The Deck that the cards will be copied from.
      */
     public Deck(Deck deck){
-        this.deck = deck.deck;
+        this.cardCatalog = deck.cardCatalog;
+        this.deck = new ArrayList<>(deck.getCardList());
         save();
     }
 
@@ -88,44 +105,275 @@ public class Deck {
     }
 
 	public int size(){
-		return deck.size();
+		return cards().size() - top;
 	}
 
+    /**
+     * Draws the top card. A deck shuffled by shuffle(Random) picks it from the cards not drawn yet, which is the next
+     * step of a Fisher-Yates shuffle, and a deck shuffled by shuffle(long, boolean) takes the card with the lowest
+     * key from its heap.
+     * @return The card drawn.
+     */
 	public Card draw(){
-		return deck.remove(0);
+		List<Card> cards = cards();
+
+		if(keyCount > 0){
+			long key = popMin(shuffleKeys, 0, keyCount--);
+			cards.set(top, shuffleCards[(int) (key & 0xFFFFF)]);
+		}
+		else if(drawRand != null){
+			Collections.swap(cards, top, top + drawRand.nextInt(cards.size() - top));
+		}
+
+		return cards.get(top++);
+	}
+
+    /**
+     * Puts cards back on top of the deck, like a mulligan does with a hand. If they are the last cards drawn, in the
+     * order they were drawn, they are still in the list before the cursor, so the cursor just moves back over them.
+     * @param cards The cards to put back.
+     */
+	public void putBack(List<Card> cards){
+		List<Card> list = cards();
+		int count = cards.size();
+		boolean lastDrawn = count <= top;
+
+		for(int i = 0; i < count && lastDrawn; i++){
+			lastDrawn = list.get(top - count + i) == cards.get(i);
+		}
+
+		if(lastDrawn){
+			finishKeyedShuffle();
+			top -= count;
+		}
+		else{
+			getCardList().addAll(0, cards);
+		}
 	}
 
 	public Card get(int n){
-		return deck.get(n);
+		return getCardList().get(n);
 	}
 
 	public void add(Card card){
-		deck.add(card);
+		getCardList().add(card);
 	}
 
 	public void add(Card card, int count){
 		for(int i = 0; i < count; i++){
-			deck.add(card.copy());
+			add(card);
 		}
 	}
 
     public void addAll(Collection<Card> cards){
-        deck.addAll(cards);
+        getCardList().addAll(cards);
     }
 
 	public void shuffle(){
-		Collections.shuffle(deck);
+		drawRand = null;
+		Collections.shuffle(getCardList());
+	}
+
+    /**
+     * Shuffles the cards not drawn yet lazily: nothing moves now, and each draw picks its card at random from the
+     * cards left (see draw). A game only draws a third of a deck, so this costs a third of a full shuffle, and after a
+     * mulligan puts the hand back (see putBack) shuffling again costs nothing. The Random is kept for the draws.
+     * @param rand The Random the draws are picked with.
+     */
+	public void shuffle(Random rand){
+		finishKeyedShuffle();
+		drawRand = rand;
+	}
+
+    /**
+     * Shuffles the deck by giving every card a random key from a seed and sorting the cards by key. A card's key only
+     * depends on the seed, the card's catalog index and which copy of the card it is, so decks shuffled with the same
+     * seed keep the cards they have in common in the same order, even if their other cards are different. The deck
+     * needs a card catalog. Does not allocate once every card has been seen.
+     * The keys are kept in a heap rather than sorted, and each draw takes the lowest, so only the cards drawn are
+     * put in order.
+     * @param seed The seed of the shuffle.
+     * @param reversed True to put the cards in the opposite order the seed gives.
+     */
+	public void shuffle(long seed, boolean reversed){
+		drawRand = null;
+		List<Card> cards = getCardList();
+		int size = cards.size();
+
+		if(shuffleKeys.length < size){
+			shuffleKeys = new long[size];
+			shuffleCards = new Card[size];
+		}
+
+		for(int i = 0; i < size; i++){
+			Card card = cards.get(i);
+
+			if(card.id >= copyCounts.length){
+				copyCounts = Arrays.copyOf(copyCounts, Math.max(card.id + 1, copyCounts.length * 2));
+			}
+			int copy = copyCounts[card.id]++;
+
+			long key = PairedRandom.mix(seed, ((long) getCatalogIndex(card) << 20) | copy);
+			if(reversed){
+				key = ~key;
+			}
+
+			// the top bits of the key, with the card's position in the low bits
+			shuffleKeys[i] = (key & ~0xFFFFFL) | i;
+			shuffleCards[i] = card;
+		}
+
+		for(int i = 0; i < size; i++){
+			copyCounts[shuffleCards[i].id] = 0;
+		}
+
+		heapify(shuffleKeys, 0, size);
+		keyCount = size;
+	}
+
+    /**
+     * Puts the cards left in a shuffle(long, boolean) heap in the list, in order.
+     */
+	private void finishKeyedShuffle(){
+		List<Card> cards = cards();
+
+		for(int i = top; keyCount > 0; i++){
+			long key = popMin(shuffleKeys, 0, keyCount--);
+			cards.set(i, shuffleCards[(int) (key & 0xFFFFF)]);
+		}
+	}
+
+    /**
+     * Finishes any shuffle, and drops the drawn cards from the list, so the list holds the cards not drawn yet in
+     * the order they would be drawn.
+     */
+	private void settle(){
+		List<Card> cards = deck;
+		if(cards == null){
+			return;
+		}
+
+		finishKeyedShuffle();
+
+		if(drawRand != null){
+			for(int i = top; i < cards.size() - 1; i++){
+				Collections.swap(cards, i, i + drawRand.nextInt(cards.size() - i));
+			}
+			drawRand = null;
+		}
+
+		if(top > 0){
+			cards.subList(0, top).clear();
+			top = 0;
+		}
+	}
+
+    /**
+     * Forgets the cards drawn and any shuffle in progress, before the cards are replaced.
+     */
+	private void clearDraws(){
+		keyCount = 0;
+		top = 0;
+		drawRand = null;
 	}
 
-	private List<Card> getCardList(){
+    /**
+     * Turns part of an array of keys into a binary min-heap.
+     * @param heap The array.
+     * @param offset The index of the heap's first key.
+     * @param size The number of keys.
+     */
+	static void heapify(long[] heap, int offset, int size){
+		for(int i = size / 2 - 1; i >= 0; i--){
+			siftDown(heap, offset, size, i);
+		}
+	}
+
+    /**
+     * Removes the lowest key from a heap made by heapify.
+     * @param heap The array.
+     * @param offset The index of the heap's first key.
+     * @param size The number of keys, which is one fewer afterwards.
+     * @return The lowest key.
+     */
+	static long popMin(long[] heap, int offset, int size){
+		long min = heap[offset];
+		heap[offset] = heap[offset + size - 1];
+		siftDown(heap, offset, size - 1, 0);
+
+		return min;
+	}
+
+	private static void siftDown(long[] heap, int offset, int size, int i){
+		long key = heap[offset + i];
+
+		while(2 * i + 1 < size){
+			int child = 2 * i + 1;
+			if(child + 1 < size && heap[offset + child + 1] < heap[offset + child]){
+				child++;
+			}
+			if(heap[offset + child] >= key){
+				break;
+			}
+
+			heap[offset + i] = heap[offset + child];
+			i = child;
+		}
+
+		heap[offset + i] = key;
+	}
+
+    /**
+     * Looks up a card's index in the deck's catalog, which unlike its id doesn't depend on the order cards were
+     * created in, so seeded shuffles are the same in every JVM.
+     */
+	private int getCatalogIndex(Card card){
+		if(cardCatalog == null){
+			throw new IllegalStateException("A seeded shuffle needs the deck's card catalog");
+		}
+
+		if(card.id >= catalogIndexes.length){
+			catalogIndexes = Arrays.copyOf(catalogIndexes, Math.max(card.id + 1, catalogIndexes.length * 2));
+		}
+		if(catalogIndexes[card.id] == 0){
+			catalogIndexes[card.id] = cardCatalog.getCardIndex(card.name) + 1;
+		}
+
+		return catalogIndexes[card.id] - 1;
+	}
+
+    /**
+     * Sets the catalog the deck's cards come from.
+     * @param cardCatalog The catalog.
+     */
+	void setCardCatalog(CardCatalog cardCatalog){
+		if(cardCatalog != this.cardCatalog){
+			this.cardCatalog = cardCatalog;
+			Arrays.fill(catalogIndexes, 0);
+		}
+	}
+
+    /**
+     * Gets the List of Cards backing this deck, with any shuffle finished and the drawn cards dropped.
+     * @return The cards in this deck.
+     */
+	protected List<Card> getCardList(){
+		settle();
 		return deck;
 	}
 
+    /**
+     * Gets the list the cursor moves through, without settling it.
+     */
+	private List<Card> cards(){
+		return deck != null ? deck : getCardList();
+	}
+
     /**
      * Sorts the deck, placing lands before other cards, and sorting by name.
      */
     public void sort(){
-        deck.sort(new Comparator<Card>() {
+        getCardList().sort(new Comparator<Card>() {
             @Override
             public int compare(Card o1, Card o2) {
                 if(o1.type == Card.CardType.Land && o2.type != Card.CardType.Land){
@@ -146,14 +394,15 @@ public class Deck {
      * @return A new copy of this Deck.
      */
 	public Deck copy(){
-		Deck copy = new Deck(new ArrayList<>(deck));
+		Deck copy = new Deck(new ArrayList<>(getCardList()));
+		copy.cardCatalog = cardCatalog;
 		copy.save();
 
 		return copy;
 	}
 
     public List<Card> subList(int min, int max){
-        return deck.subList(min, max);
+        return getCardList().subList(min, max);
     }
 
     /**
@@ -162,24 +411,59 @@ public class Deck {
      * @param newCard The card that will be used to replace the old card.
      */
     public void replace(int pos, Card newCard){
-        deck.remove(pos);
-        deck.add(newCard);
+        getCardList().remove(pos);
+        getCardList().add(newCard);
     }
 
     /**
      * Save is used to set the deck this Deck will revert to when reset is called.
      */
 	public void save(){
-		originalDeck = new ArrayList<>(deck);
+		if(originalDeck == null){
+			originalDeck = new ArrayList<>(getCardList());
+			return;
+		}
+
+		copyInto(getCardList(), originalDeck);
+	}
+
+    /**
+     * Reverts this deck to the cards, and order, it had when save was last called. Does not allocate.
+     */
+	public void reset(){
+		clearDraws();
+		copyInto(originalDeck, getCardList());
+	}
+
+    /**
+     * Replaces the cards in this deck with the given cards and saves them. Does not allocate once the deck has
+     * grown to the size of the largest list loaded.
+     * @param cards The cards this deck will contain.
+     */
+	public void load(List<Card> cards){
+		clearDraws();
+		copyInto(cards, getCardList());
+		save();
+	}
+
+    /**
+     * Replaces the contents of one list with another. Unlike addAll, this doesn't allocate a temporary array.
+     */
+	private static void copyInto(List<Card> from, List<Card> to){
+		to.clear();
+
+		for(int i = 0; i < from.size(); i++){
+			to.add(from.get(i));
+		}
 	}
 
 
     public String toString(){
-        String str = "Size: " + deck.size() + "\n";
+        String str = "Size: " + size() + "\n";
         str += "-- Deck List --\n";
         HashMap<String, Integer> hashMap = new HashMap<>();
 
-        for(Card card : deck){
+        for(Card card : getCardList()){
             if(!hashMap.containsKey(card.name)){
                 hashMap.put(card.name, 1);
             }
@@ -0,0 +1,861 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DeckSearch finds the best deck for a small card pool by searching every deck, instead of evolving decks like
+ * Genetics does. It reports the best deck it found and how much better than it a deck it didn't play could still be.
+ * The branches it prunes are judged by a heuristic bound (see below), so its best deck is the heuristic best, not a
+ * proven one.
+ *
+ * A deck is the number of copies of each card, so the search is a branch and bound over card counts: each level
+ * of the tree fixes the count of one card, lands first. Cards the game can't tell apart share a level, so every
+ * land is one card, as are nonland cards with the same type, cost, damage, attack and haste.
+ *
+ * Branches are pruned with ManaCurve, which estimates a deck's win turn optimistically. The bound of a branch is the
+ * estimate of a deck holding every copy still to be chosen of every card still to be counted, which is better than
+ * any deck in the branch. Branches and decks whose bound is worse than the best deck's upper confidence bound
+ * can't hold a better deck and aren't played. ManaCurve is not a strict bound, so neither is this one, but it
+ * only ever favors the decks it is asked about.
+ *
+ * The decks that are left race the best deck found so far. Both play rounds of games with common random numbers,
+ * and are compared by the differences between their win turns game by game, until one is better with confidence
+ * (see setConfidenceZ), or both have played the most games a deck can play.
+ * Decks that are still too close to call are reported with the result, since they might be better.
+ *
+ * The tree is split into branches by land count and the count of the first nonland card, and the branches are
+ * searched in parallel, the most promising first.
+ *
+ * Usage:
+ * DeckSearch.Result result = new DeckSearch(catalog).search(600);
+ * System.out.println(result);
+ */
+public class DeckSearch {
+
+    private static final int DEFAULT_DECK_SIZE = 60;
+    // The games a deck plays in the first round of a race. Each later round doubles the deck's games.
+    private static final int DEFAULT_ROUND_RUN_COUNT = 50;
+    // The most games a deck plays before a race is called a tie
+    private static final int DEFAULT_MAX_RUN_COUNT = 20000;
+    private static final double DEFAULT_CONFIDENCE_Z = 3;
+    // The decks that calibrate the bound, and the games they need to have played to be accurate enough
+    private static final int CALIBRATION_DECKS = 20;
+    private static final int CALIBRATION_RUN_COUNT = 1000;
+
+    private final CardCatalog cardCatalog;
+    // the catalog index of the card that stands for each level: the lands, then each kind of nonland card
+    private final int[] levelCards;
+    private final int[] costs;
+    private final int[] damages;
+    private final int[] attacks;
+    private final boolean[] haste;
+
+    private int deckSize;
+    private int minLands;
+    private int maxLands;
+    private int roundRunCount;
+    private int maxRunCount;
+    private double confidenceZ;
+    private boolean calibratedBound;
+    private int threadCount;
+    private long seed;
+    private RankedDeck initialDeck;
+
+    /**
+     * Creates a DeckSearch over the cards of a catalog. The catalog needs at least one land and one nonland card.
+     * @param cardCatalog The cards to use in the decks.
+     */
+    public DeckSearch(CardCatalog cardCatalog){
+        this.cardCatalog = cardCatalog;
+
+        List<Integer> cards = new ArrayList<>();
+        List<String> kinds = new ArrayList<>();
+        int land = -1;
+
+        for(int i = 0; i < cardCatalog.getCatalogSize(); i++){
+            Card card = cardCatalog.getCardAt(i);
+
+            if(card.type == Card.CardType.Land){
+                if(land < 0){
+                    land = i;
+                }
+                continue;
+            }
+
+            String kind = card.type + " " + card.cost + " " + PlaySearch.getTurnDamage(card) + " "
+                    + PlaySearch.getAttack(card) + " " + isHaste(card);
+            if(!kinds.contains(kind)){
+                kinds.add(kind);
+                cards.add(i);
+            }
+        }
+
+        if(land < 0 || cards.isEmpty()){
+            throw new IllegalArgumentException("the catalog needs a land and a nonland card");
+        }
+
+        levelCards = new int[cards.size() + 1];
+        levelCards[0] = land;
+        costs = new int[cards.size()];
+        damages = new int[cards.size()];
+        attacks = new int[cards.size()];
+        haste = new boolean[cards.size()];
+
+        for(int type = 0; type < cards.size(); type++){
+            Card card = cardCatalog.getCardAt(cards.get(type));
+
+            levelCards[type + 1] = cards.get(type);
+            costs[type] = card.cost;
+            damages[type] = PlaySearch.getTurnDamage(card);
+            attacks[type] = PlaySearch.getAttack(card);
+            haste[type] = isHaste(card);
+        }
+
+        deckSize = DEFAULT_DECK_SIZE;
+        minLands = 0;
+        maxLands = deckSize;
+        roundRunCount = DEFAULT_ROUND_RUN_COUNT;
+        maxRunCount = DEFAULT_MAX_RUN_COUNT;
+        confidenceZ = DEFAULT_CONFIDENCE_Z;
+        calibratedBound = false;
+        threadCount = Runtime.getRuntime().availableProcessors();
+        seed = new Random().nextLong();
+    }
+
+    private static boolean isHaste(Card card){
+        return card.type == Card.CardType.Creature && ((Creature) card).hasAbility(Creature.Ability.Haste);
+    }
+
+    /**
+     * Searches for the best deck.
+     * @param seconds The most seconds to search for.
+     * @return The best deck found, and whether the search was complete.
+     * @throws InterruptedException If the thread is interrupted while searching.
+     */
+    public Result search(int seconds) throws InterruptedException {
+        return new Search(System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds)).run();
+    }
+
+    /**
+     * One search, with the state its threads share.
+     */
+    private class Search {
+        private final long deadline;
+        private final long start = System.nanoTime();
+        // the chance of having each amount of mana on each turn, by land count
+        private final double[][][] manaOdds = new double[deckSize + 1][][];
+
+        private final AtomicReference<Racer> best = new AtomicReference<>();
+        // decks that tied with the best deck at the time, which might still be better
+        private final List<Racer> ties = new ArrayList<>();
+        // the least that a well played deck's lower confidence bound was above its estimate, for calibrating the bound
+        private final DoubleAccumulator margin = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+        private final LongAdder raced = new LongAdder();
+        // the best bound of the branches left unsearched when time ran out
+        private final DoubleAccumulator unsearchedBound = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+
+        private final LongAdder nodes = new LongAdder();
+        private final LongAdder boundPruned = new LongAdder();
+        private final LongAdder racePruned = new LongAdder();
+        private final LongAdder games = new LongAdder();
+
+        private final ThreadLocal<BatchGame> batches = ThreadLocal.withInitial(() -> new BatchGame(new PairedRandom()));
+
+        Search(long deadline){
+            this.deadline = deadline;
+
+            for(int lands = minLands; lands <= Math.min(maxLands, deckSize); lands++){
+                manaOdds[lands] = ManaCurve.getManaOdds(deckSize, lands);
+            }
+        }
+
+        Result run() throws InterruptedException {
+            if(initialDeck != null && !isOutOfTime()){
+                RankedDeck deck = new RankedDeck(cardCatalog, getCounts(initialDeck));
+                race(deck, ManaCurve.estimateWinTurn(deck));
+            }
+
+            // ManaCurve doesn't see flooding, so its bounds can't tell good land counts from too many lands. A deck with
+            // an even mix of cards for every land count finds a good land count early, and a best deck to prune with.
+            for(int lands = minLands; lands <= Math.min(maxLands, deckSize) && !isOutOfTime(); lands++){
+                int spells = deckSize - lands;
+                int[] counts = new int[levelCards.length];
+                counts[0] = lands;
+
+                for(int level = 1; level < counts.length; level++){
+                    counts[level] = spells / costs.length + (level <= spells % costs.length ? 1 : 0);
+                }
+
+                race(new RankedDeck(cardCatalog, getDeckCounts(counts)), getBound(counts, counts.length));
+            }
+
+            // the top of the tree, with the land count and the count of the first nonland card fixed
+            List<Branch> branches = new ArrayList<>();
+            for(int lands = minLands; lands <= Math.min(maxLands, deckSize); lands++){
+                int spells = deckSize - lands;
+
+                // with one nonland card, it gets every card that isn't a land
+                for(int first = levelCards.length == 2 ? spells : 0; first <= spells; first++){
+                    int[] counts = new int[levelCards.length];
+                    counts[0] = lands;
+                    counts[1] = first;
+
+                    branches.add(new Branch(counts, getBound(counts, 2)));
+                }
+            }
+            branches.sort(Comparator.comparingDouble((Branch branch) -> branch.bound));
+
+            ExecutorService workers = Executors.newFixedThreadPool(threadCount, r -> {
+                Thread thread = new Thread(r, "goldfish-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try{
+                List<Future<?>> searches = new ArrayList<>();
+                for(Branch branch : branches){
+                    searches.add(workers.submit(() -> search(branch.counts, 2, branch.bound)));
+                }
+
+                for(Future<?> search : searches){
+                    search.get();
+                }
+            }
+            catch(ExecutionException e){
+                throw new RuntimeException(e.getCause());
+            }
+            finally{
+                workers.shutdownNow();
+            }
+
+            return getResult();
+        }
+
+        /**
+         * Searches the branch below a node.
+         * @param counts The counts of the levels above the node, which the search changes and restores.
+         * @param level The level the node fixes.
+         * @param bound The bound of the node.
+         */
+        private void search(int[] counts, int level, double bound){
+            nodes.increment();
+
+            if(isOutOfTime()){
+                unsearchedBound.accumulate(bound + getMargin());
+                return;
+            }
+            if(bound + getMargin() > getCutoff()){
+                boundPruned.increment();
+                return;
+            }
+
+            int left = deckSize;
+            for(int i = 0; i < level; i++){
+                left -= counts[i];
+            }
+
+            // a deck's bound is its own estimate
+            if(left == 0){
+                race(new RankedDeck(cardCatalog, getDeckCounts(counts)), bound);
+                return;
+            }
+            if(level == levelCards.length - 1){
+                counts[level] = left;
+                race(new RankedDeck(cardCatalog, getDeckCounts(counts)), bound);
+                counts[level] = 0;
+                return;
+            }
+
+            // the most promising children first, so the best deck improves early and prunes more
+            double[] bounds = new double[left + 1];
+            Integer[] order = new Integer[left + 1];
+            for(int count = 0; count <= left; count++){
+                counts[level] = count;
+                bounds[count] = getBound(counts, level + 1);
+                order[count] = count;
+            }
+            Arrays.sort(order, Comparator.comparingDouble((Integer count) -> bounds[count]));
+
+            for(int count : order){
+                counts[level] = count;
+                search(counts, level + 1, bounds[count]);
+            }
+            counts[level] = 0;
+        }
+
+        private boolean isOutOfTime(){
+            return System.nanoTime() - deadline > 0;
+        }
+
+        /**
+         * Gets the bound of a node: the estimate of a deck with its fixed counts, and every copy left for each of the
+         * levels below it.
+         */
+        private double getBound(int[] counts, int fixedLevels){
+            int left = deckSize;
+            for(int i = 0; i < fixedLevels; i++){
+                left -= counts[i];
+            }
+
+            double[] copies = new double[costs.length];
+            for(int type = 0; type < costs.length; type++){
+                copies[type] = type + 1 < fixedLevels ? counts[type + 1] : left;
+            }
+
+            return ManaCurve.estimateWinTurn(deckSize, manaOdds[counts[0]], costs, damages, attacks, copies);
+        }
+
+        /**
+         * @return The bound a deck needs to be under to possibly be better than the best deck.
+         */
+        private double getCutoff(){
+            Racer current = best.get();
+            if(current == null){
+                return Double.POSITIVE_INFINITY;
+            }
+
+            // the best deck is played under its lock, so its stats are read under it too
+            synchronized(current){
+                return current.deck.getStats().getUpperBound(confidenceZ);
+            }
+        }
+
+        /**
+         * @return How much worse than their bound decks are known to be, or 0 if the bound isn't calibrated (yet).
+         */
+        private double getMargin(){
+            return calibratedBound && raced.sum() >= CALIBRATION_DECKS ? Math.max(0, margin.get()) : 0;
+        }
+
+        /**
+         * Races a deck against the best deck, and makes it the best deck if it wins. A deck whose race is cut short
+         * by the deadline counts as unsearched.
+         * @param deck The deck.
+         * @param estimate The deck's ManaCurve estimate.
+         */
+        private void race(RankedDeck deck, double estimate){
+            Racer racer = new Racer(deck);
+
+            if(!race(racer)){
+                unsearchedBound.accumulate(estimate + getMargin());
+                return;
+            }
+
+            // the deck might be the best deck by now, which other threads play
+            synchronized(racer){
+                if(racer.games >= CALIBRATION_RUN_COUNT){
+                    margin.accumulate(deck.getStats().getLowerBound(confidenceZ) - estimate);
+                    raced.increment();
+                }
+            }
+        }
+
+        /**
+         * @return False if the deadline passed before the race was decided.
+         */
+        private boolean race(Racer racer){
+            BatchGame batch = batches.get();
+
+            while(true){
+                if(isOutOfTime()){
+                    return false;
+                }
+
+                Racer current = best.get();
+                play(racer, Math.min(Math.max(roundRunCount, racer.games), maxRunCount - racer.games), batch);
+
+                if(current == null){
+                    if(best.compareAndSet(null, racer)){
+                        return true;
+                    }
+                    continue;
+                }
+
+                // the best deck catches up to the same games, so both decks are compared on the same luck. Other
+                // threads play the best deck too, so it is compared under its lock
+                int comparison;
+                boolean faster;
+                synchronized(current){
+                    int behind = racer.games - current.games;
+                    if(behind > 0){
+                        play(current, behind, batch);
+                    }
+
+                    comparison = compare(racer, current);
+                    faster = getDifference(racer, current) < 0;
+                }
+
+                if(comparison > 0){
+                    racePruned.increment();
+                    return true;
+                }
+                if(comparison < 0){
+                    if(best.compareAndSet(current, racer)){
+                        return true;
+                    }
+                }
+                else if(racer.games >= maxRunCount){
+                    // too close to call, so the faster deck on average is the best and the other is a tie
+                    if(!faster){
+                        addTie(racer);
+                        return true;
+                    }
+                    if(best.compareAndSet(current, racer)){
+                        addTie(current);
+                        return true;
+                    }
+                }
+            }
+        }
+
+        private void play(Racer racer, int gameCount, BatchGame batch){
+            racer.ensureCapacity(racer.games + gameCount);
+            racer.deck.playGames(racer.games, gameCount, batch, seed, false, racer.winTurns);
+            racer.games += gameCount;
+            games.add(gameCount);
+        }
+
+        /**
+         * Compares two decks by the differences between their win turns on the games both have played. Game n of
+         * every deck has the same seed, so the luck the decks share cancels out of each difference, and the
+         * differences vary far less than the win turns do.
+         * @return Less than zero if the first deck is better with confidence, more than zero if it is worse, and zero
+         *     if they are too close to call.
+         */
+        private int compare(Racer racer, Racer other){
+            int games = Math.min(racer.games, other.games);
+            if(games < 2){
+                return 0;
+            }
+
+            long sum = 0;
+            long squareSum = 0;
+            for(int i = 0; i < games; i++){
+                int difference = racer.winTurns[i] - other.winTurns[i];
+                sum += difference;
+                squareSum += (long) difference * difference;
+            }
+
+            double mean = (double) sum / games;
+            double variance = Math.max(0, (squareSum - games * mean * mean) / (games - 1));
+            double error = Math.sqrt(variance / games);
+
+            if(mean - confidenceZ * error > 0){
+                return 1;
+            }
+            if(mean + confidenceZ * error < 0){
+                return -1;
+            }
+            return 0;
+        }
+
+        /**
+         * @return How many turns slower the first deck is than the other on the games both have played.
+         */
+        private double getDifference(Racer racer, Racer other){
+            int games = Math.min(racer.games, other.games);
+            long sum = 0;
+
+            for(int i = 0; i < games; i++){
+                sum += racer.winTurns[i] - other.winTurns[i];
+            }
+
+            return games == 0 ? 0 : (double) sum / games;
+        }
+
+        private synchronized void addTie(Racer racer){
+            ties.add(racer);
+        }
+
+        private synchronized Result getResult(){
+            Racer winner = best.get();
+            List<RankedDeck> close = new ArrayList<>();
+
+            // ties the final best deck beat since aren't close any more
+            for(Racer tie : ties){
+                if(tie != winner && compare(tie, winner) <= 0){
+                    close.add(tie.deck);
+                }
+            }
+
+            double gap = 0;
+            if(winner != null){
+                double bestPossible = unsearchedBound.get();
+
+                for(RankedDeck tie : close){
+                    bestPossible = Math.min(bestPossible, tie.getStats().getLowerBound(confidenceZ));
+                }
+
+                gap = Math.max(0, winner.deck.getAverageWinTurn() - bestPossible);
+            }
+
+            boolean searched = unsearchedBound.get() == Double.POSITIVE_INFINITY;
+
+            return new Result(winner == null ? null : winner.deck, close, searched && close.isEmpty(), gap,
+                    nodes.sum(), boundPruned.sum(), racePruned.sum(), games.sum(),
+                    (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * A deck in a race, with the win turn of each game it has played, by game number.
+     */
+    private static class Racer {
+        final RankedDeck deck;
+        int[] winTurns = new int[0];
+        int games;
+
+        Racer(RankedDeck deck){
+            this.deck = deck;
+        }
+
+        void ensureCapacity(int games){
+            if(winTurns.length < games){
+                winTurns = Arrays.copyOf(winTurns, Math.max(games, winTurns.length * 2));
+            }
+        }
+    }
+
+    /**
+     * A branch at the top of the tree, with its bound.
+     */
+    private static class Branch {
+        final int[] counts;
+        final double bound;
+
+        Branch(int[] counts, double bound){
+            this.counts = counts;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * Turns the counts of the levels into the counts of a deck, with each level's copies all of the card that
+     * stands for it.
+     */
+    private int[] getDeckCounts(int[] counts){
+        int[] deck = new int[cardCatalog.getCatalogSize()];
+
+        for(int level = 0; level < levelCards.length; level++){
+            deck[levelCards[level]] = counts[level];
+        }
+
+        return deck;
+    }
+
+    /**
+     * Gets the counts of a deck, with each card counted as the card that stands for its level.
+     */
+    private int[] getCounts(RankedDeck deck){
+        int[] counts = new int[levelCards.length];
+
+        for(int i = 0; i < cardCatalog.getCatalogSize(); i++){
+            Card card = cardCatalog.getCardAt(i);
+            int level = 0;
+
+            if(card.type != Card.CardType.Land){
+                for(int type = 0; type < costs.length; type++){
+                    if(card.cost == costs[type] && PlaySearch.getTurnDamage(card) == damages[type]
+                            && PlaySearch.getAttack(card) == attacks[type] && isHaste(card) == haste[type]
+                            && card.type == cardCatalog.getCardAt(levelCards[type + 1]).type){
+                        level = type + 1;
+                    }
+                }
+            }
+
+            counts[level] += deck.getCount(i);
+        }
+
+        return getDeckCounts(counts);
+    }
+
+    /**
+     * The outcome of a search.
+     */
+    public static class Result {
+        private final RankedDeck best;
+        private final List<RankedDeck> ties;
+        private final boolean complete;
+        private final double gap;
+        private final long nodes;
+        private final long boundPruned;
+        private final long racePruned;
+        private final long games;
+        private final double seconds;
+
+        Result(RankedDeck best, List<RankedDeck> ties, boolean complete, double gap, long nodes, long boundPruned,
+               long racePruned, long games, double seconds){
+            this.best = best;
+            this.ties = ties;
+            this.complete = complete;
+            this.gap = gap;
+            this.nodes = nodes;
+            this.boundPruned = boundPruned;
+            this.racePruned = racePruned;
+            this.games = games;
+            this.seconds = seconds;
+        }
+
+        /**
+         * @return The best deck found.
+         */
+        public RankedDeck getBest(){
+            return best;
+        }
+
+        /**
+         * @return The decks that are too close to the best deck to tell apart.
+         */
+        public List<RankedDeck> getTies(){
+            return ties;
+        }
+
+        /**
+         * @return True if the whole tree was searched, and every deck that was raced is worse than the best deck with
+         *     confidence. The decks that weren't raced were pruned by ManaCurve's estimates, which aren't a strict
+         *     bound, so this is not a proof that no deck is better.
+         */
+        public boolean isComplete(){
+            return complete;
+        }
+
+        /**
+         * @return How many turns faster than the best deck an unsearched or tied deck could be, by the heuristic
+         *     bound, or 0 if the search was complete.
+         */
+        public double getGap(){
+            return gap;
+        }
+
+        /**
+         * @return The number of nodes of the tree visited.
+         */
+        public long getNodeCount(){
+            return nodes;
+        }
+
+        /**
+         * @return The number of branches and decks pruned by their bound.
+         */
+        public long getBoundPrunedCount(){
+            return boundPruned;
+        }
+
+        /**
+         * @return The number of decks that lost a race.
+         */
+        public long getRacePrunedCount(){
+            return racePruned;
+        }
+
+        /**
+         * @return The number of games played.
+         */
+        public long getGameCount(){
+            return games;
+        }
+
+        /**
+         * @return The number of seconds the search took.
+         */
+        public double getSeconds(){
+            return seconds;
+        }
+
+        @Override
+        public String toString(){
+            return (complete ? "Heuristic best, search complete" : "Best found, gap " + gap + " turns, " + ties.size()
+                    + " ties")
+                    + " after " + seconds + " seconds, " + nodes + " nodes, " + boundPruned + " pruned by bound, "
+                    + racePruned + " by racing, " + games + " games:\n" + best;
+        }
+    }
+
+    /**
+     * The deck size is the number of cards in every deck searched.
+     * @return The current deck size
+     */
+    public int getDeckSize() {
+        return deckSize;
+    }
+
+    /**
+     * The deck size is the number of cards in every deck searched.
+     * @param deckSize The new deck size
+     */
+    public void setDeckSize(int deckSize) {
+        if(deckSize < 1){
+            throw new IllegalArgumentException("deckSize must be at least 1, was " + deckSize);
+        }
+
+        this.deckSize = deckSize;
+    }
+
+    /**
+     * @return The fewest lands a deck searched can have
+     */
+    public int getMinLands() {
+        return minLands;
+    }
+
+    /**
+     * @return The most lands a deck searched can have
+     */
+    public int getMaxLands() {
+        return maxLands;
+    }
+
+    /**
+     * Limits the land counts searched, such as to the usual 15 to 25. Decks outside the limits aren't searched, so
+     * a proof only covers decks inside them.
+     * @param minLands The fewest lands
+     * @param maxLands The most lands
+     */
+    public void setLandRange(int minLands, int maxLands) {
+        if(minLands < 0 || maxLands < minLands){
+            throw new IllegalArgumentException("invalid land range " + minLands + " to " + maxLands);
+        }
+
+        this.minLands = minLands;
+        this.maxLands = maxLands;
+    }
+
+    /**
+     * The round run count is the number of games a deck plays in each round of a race.
+     * @return The current round run count
+     */
+    public int getRoundRunCount() {
+        return roundRunCount;
+    }
+
+    /**
+     * The round run count is the number of games a deck plays in each round of a race.
+     * @param roundRunCount The new round run count
+     */
+    public void setRoundRunCount(int roundRunCount) {
+        if(roundRunCount < 2){
+            throw new IllegalArgumentException("roundRunCount must be at least 2, was " + roundRunCount);
+        }
+
+        this.roundRunCount = roundRunCount;
+    }
+
+    /**
+     * The max run count is the most games a deck plays in a race. Decks still too close to call are ties.
+     * @return The current max run count
+     */
+    public int getMaxRunCount() {
+        return maxRunCount;
+    }
+
+    /**
+     * The max run count is the most games a deck plays in a race. Decks still too close to call are ties.
+     * @param maxRunCount The new max run count
+     */
+    public void setMaxRunCount(int maxRunCount) {
+        if(maxRunCount < 2){
+            throw new IllegalArgumentException("maxRunCount must be at least 2, was " + maxRunCount);
+        }
+
+        this.maxRunCount = maxRunCount;
+    }
+
+    /**
+     * The confidence z is the number of standard errors by which one deck must beat another to win a race, and
+     * a deck's upper confidence bound is its average win turn plus that many standard errors.
+     * @return The current confidence z
+     */
+    public double getConfidenceZ() {
+        return confidenceZ;
+    }
+
+    /**
+     * The confidence z is the number of standard errors by which one deck must beat another to win a race, and
+     * a deck's upper confidence bound is its average win turn plus that many standard errors.
+     * @param confidenceZ The new confidence z
+     */
+    public void setConfidenceZ(double confidenceZ) {
+        if(!(confidenceZ > 0)){
+            throw new IllegalArgumentException("confidenceZ must be positive, was " + confidenceZ);
+        }
+
+        this.confidenceZ = confidenceZ;
+    }
+
+    /**
+     * With a calibrated bound, the search learns how optimistic ManaCurve is from the decks it races: the bound of a
+     * branch is raised by the least that any raced deck's lower confidence bound was above its estimate. That prunes
+     * far more, but the calibration is measured rather than known, so it only holds if no unraced deck is
+     * more favored by ManaCurve than every raced deck was.
+     * @return True if the bound is calibrated
+     */
+    public boolean isCalibratedBound() {
+        return calibratedBound;
+    }
+
+    /**
+     * With a calibrated bound, the search learns how optimistic ManaCurve is from the decks it races: the bound of a
+     * branch is raised by the least that any raced deck's lower confidence bound was above its estimate. That prunes
+     * far more, but the calibration is measured rather than known, so it only holds if no unraced deck is
+     * more favored by ManaCurve than every raced deck was. It is off by default, so a complete search only rests on
+     * ManaCurve's estimates.
+     * @param calibratedBound True to calibrate the bound, false to use ManaCurve's estimates as they are
+     */
+    public void setCalibratedBound(boolean calibratedBound) {
+        this.calibratedBound = calibratedBound;
+    }
+
+    /**
+     * The thread count is the number of threads searching branches of the tree.
+     * @return The current thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * The thread count is the number of threads searching branches of the tree.
+     * @param threadCount The new thread count
+     */
+    public void setThreadCount(int threadCount) {
+        if(threadCount < 1){
+            throw new IllegalArgumentException("threadCount must be at least 1, was " + threadCount);
+        }
+
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * The seed is where the games' common random numbers come from.
+     * @return The current seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * The seed is where the games' common random numbers come from.
+     * @param seed The new seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * The initial deck is raced first, so a good deck, such as the best of a Genetics run, prunes from the start.
+     * @return The current initial deck, or null if there is none
+     */
+    public RankedDeck getInitialDeck() {
+        return initialDeck;
+    }
+
+    /**
+     * The initial deck is raced first, so a good deck, such as the best of a Genetics run, prunes from the start.
+     * @param initialDeck The new initial deck, from this search's catalog, or null for none
+     */
+    public void setInitialDeck(RankedDeck initialDeck) {
+        this.initialDeck = initialDeck;
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * DeckStats holds the results of the games played by a deck.
+ *
+ * Win turns are small whole numbers, so the results are a histogram with a count for every turn up to Game.MAX_TURN.
+ * Besides the average, that gives the variance, percentiles and the chance of winning by a turn, and two histograms
+ * merge by adding their counts. A game that is given up on at Game.MAX_TURN counts as won on that turn, like the
+ * turn Game.playGame returns.
+ *
+ * Decks with the same cards can share one DeckStats (see FitnessCache), so every game played by any of them counts
+ * towards the same results. The methods are synchronized because those decks may be played on different threads.
+ */
+public class DeckStats {
+
+    /**
+     * The ways decks can be ranked. Every objective gives a score where lower is better.
+     */
+    public enum Objective {
+        // the average win turn
+        MeanWinTurn,
+        // a percentile of the win turns, such as 90 for the turn 90% of the games are won by
+        WinTurnPercentile,
+        // the chance of not having won by a turn, so a deck that wins by the turn more often scores lower
+        WinByTurn
+    }
+
+    // the number of win turns counted, from turn 0 to Game.MAX_TURN
+    static final int WIN_TURNS = Game.MAX_TURN + 1;
+
+    // turnCounts[t] is the number of games won on turn t
+    private final int[] turnCounts = new int[WIN_TURNS];
+    private int runCount;
+    private long winTurnSum;
+    private long winTurnSquareSum;
+    // the number of the next common random numbers game to hand out
+    private int nextGame;
+
+    /**
+     * Adds the result of a single game.
+     * @param winTurn The turn the game was won on, from 0 to Game.MAX_TURN.
+     */
+    public synchronized void addWinTurn(int winTurn){
+        turnCounts[winTurn]++;
+        runCount++;
+        winTurnSum += winTurn;
+        winTurnSquareSum += winTurn * winTurn;
+    }
+
+    /**
+     * Adds the results of several games at once.
+     * @param winTurnCounts The number of games won on each turn, indexed by turn. It may be shorter than WIN_TURNS.
+     */
+    public synchronized void addWinTurns(int[] winTurnCounts){
+        for(int turn = 0; turn < winTurnCounts.length; turn++){
+            int count = winTurnCounts[turn];
+
+            turnCounts[turn] += count;
+            runCount += count;
+            winTurnSum += (long) count * turn;
+            winTurnSquareSum += (long) count * turn * turn;
+        }
+    }
+
+    /**
+     * Adds the results recorded in another DeckStats to this one.
+     * @param other The results to add.
+     */
+    public void merge(DeckStats other){
+        int[] counts;
+
+        synchronized (other) {
+            counts = other.turnCounts.clone();
+        }
+
+        addWinTurns(counts);
+    }
+
+    /**
+     * Hands out the numbers of the next common random numbers games (see RankedDeck.playGames). Decks sharing these
+     * results may be played on different threads at once, so each range of numbers is only handed out once, and the
+     * games played so far are never handed out again.
+     * @param gameCount The number of games.
+     * @return The number of the first game.
+     */
+    public synchronized int reserveGames(int gameCount){
+        int firstGame = Math.max(nextGame, runCount);
+        nextGame = firstGame + gameCount;
+
+        return firstGame;
+    }
+
+    /**
+     * @return The number of games played.
+     */
+    public synchronized int getRunCount(){
+        return runCount;
+    }
+
+    /**
+     * @return The average turn the games were won on, or -1 if no games have been played.
+     */
+    public synchronized double getAverageWinTurn(){
+        if(runCount == 0){
+            return -1.0;
+        }
+
+        return (double) winTurnSum / runCount;
+    }
+
+    /**
+     * @param turn The turn, from 0 to Game.MAX_TURN.
+     * @return The number of games won on the turn.
+     */
+    public synchronized int getWinTurnCount(int turn){
+        return turnCounts[turn];
+    }
+
+    /**
+     * Gets the chance of winning by a turn.
+     * @param turn The turn.
+     * @return The fraction of games won on or before the turn, or 0 if no games have been played.
+     */
+    public synchronized double getWinProbability(int turn){
+        if(runCount == 0){
+            return 0;
+        }
+
+        int won = 0;
+        for(int t = 0; t <= Math.min(turn, WIN_TURNS - 1); t++){
+            won += turnCounts[t];
+        }
+
+        return (double) won / runCount;
+    }
+
+    /**
+     * Gets a quantile of the win turns: the first turn that at least a fraction of the games are won by.
+     * @param fraction The fraction, from 0 to 1, such as 0.9 for the 90th percentile.
+     * @return The turn, or -1 if no games have been played.
+     */
+    public synchronized int getWinTurnQuantile(double fraction){
+        if(runCount == 0){
+            return -1;
+        }
+
+        long needed = Math.max(1, (long) Math.ceil(fraction * runCount));
+        long won = 0;
+
+        for(int turn = 0; turn < WIN_TURNS; turn++){
+            won += turnCounts[turn];
+
+            if(won >= needed){
+                return turn;
+            }
+        }
+
+        return WIN_TURNS - 1;
+    }
+
+    /**
+     * Scores these results by an objective. Lower scores are better.
+     * @param objective The objective.
+     * @param parameter The percentile for WinTurnPercentile, from 0 to 100, or the turn for WinByTurn. Not used by
+     *     MeanWinTurn.
+     * @return The score.
+     */
+    public synchronized double getScore(Objective objective, double parameter){
+        switch(objective){
+            case WinTurnPercentile:
+                return getWinTurnQuantile(parameter / 100);
+            case WinByTurn:
+                return 1 - getWinProbability((int) parameter);
+            default:
+                return getAverageWinTurn();
+        }
+    }
+
+    /**
+     * @return The sample variance of the win turns, or positive infinity if fewer than two games have been played.
+     */
+    public synchronized double getVariance(){
+        if(runCount < 2){
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double mean = (double) winTurnSum / runCount;
+        // rounding can make this slightly negative when every game was won on the same turn
+        return Math.max(0, (winTurnSquareSum - runCount * mean * mean) / (runCount - 1));
+    }
+
+    /**
+     * @return The standard error of the average win turn, or positive infinity if fewer than two games have been
+     *     played.
+     */
+    public synchronized double getStandardError(){
+        if(runCount < 2){
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return Math.sqrt(getVariance() / runCount);
+    }
+
+    /**
+     * Gets the low end of a confidence interval for the average win turn.
+     * @param z The number of standard errors below the average, such as 1.96 for a 95% interval.
+     * @return The lower bound, or negative infinity if fewer than two games have been played.
+     */
+    public synchronized double getLowerBound(double z){
+        return getAverageWinTurn() - z * getStandardError();
+    }
+
+    /**
+     * Gets the high end of a confidence interval for the average win turn.
+     * @param z The number of standard errors above the average, such as 1.96 for a 95% interval.
+     * @return The upper bound, or positive infinity if fewer than two games have been played.
+     */
+    public synchronized double getUpperBound(double z){
+        return getAverageWinTurn() + z * getStandardError();
+    }
+
+    /**
+     * Writes these results in a compact binary form.
+     * @param out The output to write to.
+     * @throws IOException If the output can't be written.
+     */
+    public synchronized void write(DataOutput out) throws IOException {
+        out.writeByte(WIN_TURNS);
+        for(int count : turnCounts){
+            out.writeInt(count);
+        }
+    }
+
+    /**
+     * Reads results written by write.
+     * @param in The input to read from.
+     * @return The results.
+     * @throws IOException If the input can't be read.
+     */
+    public static DeckStats read(DataInput in) throws IOException {
+        int turns = in.readUnsignedByte();
+
+        if(turns > WIN_TURNS){
+            throw new IOException("The results have " + turns + " win turns, but at most " + WIN_TURNS + " are kept");
+        }
+
+        int[] counts = new int[turns];
+        for(int i = 0; i < turns; i++){
+            counts[i] = in.readInt();
+        }
+
+        DeckStats stats = new DeckStats();
+        stats.addWinTurns(counts);
+        return stats;
+    }
+}
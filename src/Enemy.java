@@ -2,9 +2,11 @@
  * Created by KEMANUEL on 6/6/2015.
  */
 public class Enemy {
+	static final int STARTING_LIFE = 20;
+
 	int life;
 
 	public Enemy(){
-		life = 20;
+		life = STARTING_LIFE;
 	}
 }
@@ -0,0 +1,567 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EvaluationService plays games with decks in the background and hands back their results as CompletableFutures,
+ * so callers can submit many decks and use each result as soon as it is ready.
+ *
+ * A fixed number of workers take submitted decks from a priority queue, so higher priority decks are played first,
+ * and decks of the same priority in the order they were submitted. Each worker keeps its own Game, BatchGame and
+ * Random, like Genetics' workers. The workers run on an executor, which can be the service's own daemon threads,
+ * virtual threads on JDKs that have them, or any executor the caller supplies.
+ *
+ * Backpressure: at most maxPending decks can be waiting or playing at once. submit waits for room, and trySubmit
+ * fails right away instead.
+ * Cancellation: cancelling a future removes its deck from the queue, or, if it is already playing, stops it after
+ * the current chunk of games. The games already played stay in the deck's results.
+ *
+ * Usage:
+ * Submit decks with a number of games. A RankedDeck adds the games to its own results, so a deck can be submitted
+ * again to play more games; a Deck is played as a new RankedDeck with results of its own.
+ * Close the service when done with it.
+ */
+public class EvaluationService implements AutoCloseable {
+
+    /**
+     * The order submitted decks are played in.
+     */
+    public enum Priority {
+        High,
+        Normal,
+        Low
+    }
+
+    // Games are played in chunks of this many, and a cancelled deck stops between chunks
+    static final int CHUNK_GAMES = 256;
+    private final int DEFAULT_MAX_PENDING = 4096;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int parallelism;
+    private final int maxPending;
+    private final Semaphore room;
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Random seeds;
+
+    private volatile boolean batchEvaluation = true;
+    private volatile boolean closed;
+
+    /**
+     * Creates an EvaluationService with its own daemon worker threads, one per processor.
+     */
+    public EvaluationService(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an EvaluationService with its own daemon worker threads.
+     * @param parallelism The number of decks played at once.
+     */
+    public EvaluationService(int parallelism){
+        this(newDaemonExecutor(parallelism), true, parallelism, 0, new Random());
+    }
+
+    /**
+     * Creates an EvaluationService that runs its workers on an executor. The executor must be able to run
+     * parallelism tasks at once, and the workers keep running on it until the service is closed.
+     * @param executor The executor. The service doesn't shut it down.
+     * @param parallelism The number of decks played at once.
+     * @param maxPending The most decks that can be waiting or playing at once.
+     */
+    public EvaluationService(ExecutorService executor, int parallelism, int maxPending){
+        this(executor, false, parallelism, maxPending, new Random());
+    }
+
+    /**
+     * Creates an EvaluationService.
+     * @param executor The executor the workers run on.
+     * @param ownsExecutor True to shut the executor down when the service is closed.
+     * @param parallelism The number of decks played at once.
+     * @param maxPending The most decks that can be waiting or playing at once, or 0 for the default.
+     * @param seeds The Random the workers' Randoms are seeded from.
+     */
+    EvaluationService(ExecutorService executor, boolean ownsExecutor, int parallelism, int maxPending, Random seeds){
+        if(parallelism < 1){
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+        }
+        if(maxPending < 0){
+            throw new IllegalArgumentException("maxPending must be at least 0, was " + maxPending);
+        }
+
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.parallelism = parallelism;
+        this.maxPending = maxPending == 0 ? DEFAULT_MAX_PENDING : maxPending;
+        this.room = new Semaphore(this.maxPending);
+        this.seeds = seeds;
+
+        for(int i = 0; i < parallelism; i++){
+            executor.execute(new Worker());
+        }
+    }
+
+    /**
+     * Creates an EvaluationService whose workers are virtual threads, if this JDK has them, or otherwise its own
+     * daemon threads. The games are CPU bound, so virtual threads only help when many services share a JVM.
+     * @param parallelism The number of decks played at once.
+     * @param maxPending The most decks that can be waiting or playing at once.
+     * @return The service.
+     */
+    public static EvaluationService withVirtualThreads(int parallelism, int maxPending){
+        ExecutorService executor = newVirtualThreadExecutor();
+
+        if(executor == null){
+            executor = newDaemonExecutor(parallelism);
+        }
+
+        return new EvaluationService(executor, true, parallelism, maxPending, new Random());
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for every task, found by reflection so this still runs on
+     * JDKs without virtual threads.
+     * @return The executor, or null if this JDK doesn't have virtual threads.
+     */
+    static ExecutorService newVirtualThreadExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException | ClassCastException e){
+            return null;
+        }
+    }
+
+    private static ExecutorService newDaemonExecutor(int threads){
+        if(threads < 1){
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + threads);
+        }
+
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "goldfish-evaluation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a deck to be played with normal priority, waiting for room if too many decks are pending.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    public CompletableFuture<DeckStats> submit(Deck deck, int gameCount) throws InterruptedException {
+        return submit(new RankedDeck(deck), gameCount, Priority.Normal);
+    }
+
+    /**
+     * Submits a deck to be played with normal priority, waiting for room if too many decks are pending. The games are
+     * added to the deck's own results.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    public CompletableFuture<DeckStats> submit(RankedDeck deck, int gameCount) throws InterruptedException {
+        return submit(deck, gameCount, Priority.Normal);
+    }
+
+    /**
+     * Submits a deck to be played, waiting for room if too many decks are pending.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    public CompletableFuture<DeckStats> submit(Deck deck, int gameCount, Priority priority)
+            throws InterruptedException {
+        return submit(new RankedDeck(deck), gameCount, priority);
+    }
+
+    /**
+     * Submits a deck to be played, waiting for room if too many decks are pending. The games are added to the deck's
+     * own results.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    public CompletableFuture<DeckStats> submit(RankedDeck deck, int gameCount, Priority priority)
+            throws InterruptedException {
+        return submit(deck, gameCount, priority, batchEvaluation);
+    }
+
+    /**
+     * Submits a deck to be played in batches or one game at a time, whatever the service's batch evaluation is,
+     * waiting for room if too many decks are pending. The games are added to the deck's own results.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @param batch True to play the games in batches (see setBatchEvaluation).
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    public CompletableFuture<DeckStats> submit(RankedDeck deck, int gameCount, Priority priority, boolean batch)
+            throws InterruptedException {
+        return submit(new Task(deck, gameCount, priority, false, 0, false, batch), true);
+    }
+
+    /**
+     * Submits a deck to be played with common random numbers, waiting for room if too many decks are pending. The
+     * games are the same as RankedDeck.playGames with the same seed, whichever worker plays them. Their numbers
+     * are handed out by the deck's results when the deck is submitted, so a deck submitted again, or a deck sharing
+     * its results, plays the next games even while this one is still playing.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    public CompletableFuture<DeckStats> submit(RankedDeck deck, int gameCount, Priority priority, long seed,
+                                               boolean antithetic) throws InterruptedException {
+        return submit(deck, gameCount, priority, seed, antithetic, batchEvaluation);
+    }
+
+    /**
+     * Submits a deck to be played with common random numbers, in batches or one game at a time, whatever the
+     * service's batch evaluation is, waiting for room if too many decks are pending. The games are the same as
+     * submit(RankedDeck, int, Priority, long, boolean) plays.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @param batch True to play the games in batches (see setBatchEvaluation).
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    public CompletableFuture<DeckStats> submit(RankedDeck deck, int gameCount, Priority priority, long seed,
+                                               boolean antithetic, boolean batch) throws InterruptedException {
+        return submit(new Task(deck, gameCount, priority, true, seed, antithetic, batch), true);
+    }
+
+    /**
+     * Submits numbered games of a deck to be played with common random numbers, waiting for room if too many decks
+     * are pending, and keeps each game's win turn, so they can be paired with another deck's games with the same
+     * numbers. The numbers aren't handed out by the deck's results, so the caller must not play the same numbers
+     * twice with decks that share results.
+     * @param deck The deck.
+     * @param firstGame The number of the first game.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @param gameWinTurns Gets the win turn of each game, at the index of its number.
+     * @return The future of the deck's results, completed when the games have been played.
+     * @throws InterruptedException If interrupted while waiting for room.
+     */
+    CompletableFuture<DeckStats> submit(RankedDeck deck, int firstGame, int gameCount, Priority priority, long seed,
+                                        boolean antithetic, int[] gameWinTurns) throws InterruptedException {
+        if(firstGame < 0 || gameWinTurns.length < firstGame + gameCount){
+            throw new IllegalArgumentException("gameWinTurns has no room for games " + firstGame + " to "
+                    + (firstGame + gameCount - 1) + ", its length is " + gameWinTurns.length);
+        }
+
+        return submit(new Task(deck, firstGame, gameCount, priority, seed, antithetic, gameWinTurns,
+                batchEvaluation), true);
+    }
+
+    /**
+     * Submits a deck to be played if there is room, without waiting.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @return The future of the deck's results, which fails with a RejectedExecutionException if too many decks are
+     *     pending.
+     */
+    public CompletableFuture<DeckStats> trySubmit(Deck deck, int gameCount, Priority priority){
+        return trySubmit(new RankedDeck(deck), gameCount, priority);
+    }
+
+    /**
+     * Submits a deck to be played if there is room, without waiting. The games are added to the deck's own results.
+     * @param deck The deck.
+     * @param gameCount The number of games to play.
+     * @param priority The deck's priority.
+     * @return The future of the deck's results, which fails with a RejectedExecutionException if too many decks are
+     *     pending.
+     */
+    public CompletableFuture<DeckStats> trySubmit(RankedDeck deck, int gameCount, Priority priority){
+        try {
+            return submit(new Task(deck, gameCount, priority, false, 0, false, batchEvaluation), false);
+        }
+        catch(InterruptedException e){
+            // only waiting for room can be interrupted
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CompletableFuture<DeckStats> submit(Task task, boolean wait) throws InterruptedException {
+        if(task.gameCount < 0){
+            throw new IllegalArgumentException("gameCount must be at least 0, was " + task.gameCount);
+        }
+        if(closed){
+            task.future.completeExceptionally(new RejectedExecutionException("The service is closed"));
+            return task.future;
+        }
+
+        if(wait){
+            room.acquire();
+        }
+        else if(!room.tryAcquire()){
+            task.future.completeExceptionally(new RejectedExecutionException(
+                    "Too many decks are pending: " + getPendingCount()));
+            return task.future;
+        }
+
+        // a future cancelled while it is queued gives its room back right away
+        task.future.whenComplete((stats, e) -> {
+            if(task.future.isCancelled() && queue.remove(task)){
+                room.release();
+            }
+        });
+
+        queue.add(task);
+
+        if(closed && queue.remove(task)){
+            // closed while submitting
+            room.release();
+            task.future.completeExceptionally(new RejectedExecutionException("The service is closed"));
+        }
+
+        return task.future;
+    }
+
+    /**
+     * @return The number of decks waiting to be played.
+     */
+    public int getQueuedCount(){
+        return queue.size();
+    }
+
+    /**
+     * @return The number of decks waiting or playing.
+     */
+    public int getPendingCount(){
+        return maxPending - room.availablePermits();
+    }
+
+    /**
+     * @return The most decks that can be waiting or playing at once.
+     */
+    public int getMaxPending(){
+        return maxPending;
+    }
+
+    /**
+     * @return The number of decks played at once.
+     */
+    public int getParallelism(){
+        return parallelism;
+    }
+
+    /**
+     * Batch evaluation plays each deck's games together with BatchGame, instead of one at a time with Game. Both
+     * give the same results. This is how decks submitted afterwards without saying how are played; decks already
+     * submitted keep the way they were submitted with, and other callers sharing the service can still choose
+     * their own with each submission.
+     * @param batchEvaluation True to use batch evaluation.
+     */
+    public void setBatchEvaluation(boolean batchEvaluation){
+        this.batchEvaluation = batchEvaluation;
+    }
+
+    public boolean isBatchEvaluation(){
+        return batchEvaluation;
+    }
+
+    /**
+     * Stops the service. Decks still waiting are cancelled, decks already playing finish their current chunk of
+     * games and are cancelled, and the workers stop.
+     */
+    @Override
+    public void close(){
+        if(closed){
+            return;
+        }
+        closed = true;
+
+        List<Task> waiting = new ArrayList<>();
+        queue.drainTo(waiting);
+
+        for(Task task : waiting){
+            room.release();
+            task.future.cancel(false);
+        }
+
+        // wake every worker waiting for a deck
+        for(int i = 0; i < parallelism; i++){
+            queue.add(new Task(null, 0, Priority.High, false, 0, false, false));
+        }
+
+        if(ownsExecutor){
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A worker plays decks from the queue until the service is closed.
+     */
+    private final class Worker implements Runnable {
+        private final PairedRandom rand = new PairedRandom();
+        // created when first needed, then reset between runs instead of recreated
+        private Game game;
+        private BatchGame batch;
+
+        Worker(){
+            rand.setSeed(seeds.nextLong());
+        }
+
+        @Override
+        public void run(){
+            while(true){
+                Task task;
+
+                try {
+                    task = queue.take();
+                }
+                catch(InterruptedException e){
+                    // the executor was shut down
+                    return;
+                }
+
+                if(task.deck == null){
+                    return;
+                }
+
+                try {
+                    play(task);
+                }
+                finally {
+                    room.release();
+                }
+            }
+        }
+
+        private void play(Task task){
+            try {
+                for(int played = 0; played < task.gameCount; played += CHUNK_GAMES){
+                    if(task.future.isDone() || closed){
+                        task.future.cancel(false);
+                        return;
+                    }
+
+                    playChunk(task, played, Math.min(CHUNK_GAMES, task.gameCount - played));
+                }
+
+                task.future.complete(task.deck.getStats());
+            }
+            catch(Throwable e){
+                task.future.completeExceptionally(e);
+
+                if(e instanceof Error){
+                    throw (Error) e;
+                }
+            }
+        }
+
+        private void playChunk(Task task, int played, int games){
+            if(task.batch){
+                if(batch == null){
+                    batch = new BatchGame(rand);
+                }
+
+                if(task.seeded){
+                    task.deck.playGames(task.firstGame + played, games, batch, task.seed, task.antithetic,
+                            task.gameWinTurns);
+                }
+                else{
+                    task.deck.playGames(games, batch);
+                }
+            }
+            else{
+                if(game == null){
+                    game = new Game(rand);
+                }
+
+                if(task.seeded){
+                    task.deck.playGames(task.firstGame + played, games, game, task.seed, task.antithetic,
+                            task.gameWinTurns);
+                }
+                else{
+                    task.deck.playGames(games, game);
+                }
+            }
+        }
+    }
+
+    /**
+     * A deck waiting to be played, or, without a deck, a signal for a worker to stop.
+     */
+    private final class Task implements Comparable<Task> {
+        final RankedDeck deck;
+        final int gameCount;
+        final Priority priority;
+        final boolean seeded;
+        final long seed;
+        final boolean antithetic;
+        // the number of the task's first common random numbers game, handed out when the task is submitted
+        final int firstGame;
+        // if not null, gets the win turn of each common random numbers game, at the index of its number
+        final int[] gameWinTurns;
+        // true to play the games with BatchGame, false to play them one at a time with Game
+        final boolean batch;
+        final long order = sequence.getAndIncrement();
+        final CompletableFuture<DeckStats> future = new CompletableFuture<>();
+
+        Task(RankedDeck deck, int gameCount, Priority priority, boolean seeded, long seed, boolean antithetic,
+             boolean batch){
+            this.deck = deck;
+            this.gameCount = gameCount;
+            this.priority = priority;
+            this.seeded = seeded;
+            this.seed = seed;
+            this.antithetic = antithetic;
+            this.firstGame = seeded && gameCount > 0 ? deck.getStats().reserveGames(gameCount) : 0;
+            this.gameWinTurns = null;
+            this.batch = batch;
+        }
+
+        Task(RankedDeck deck, int firstGame, int gameCount, Priority priority, long seed, boolean antithetic,
+             int[] gameWinTurns, boolean batch){
+            this.deck = deck;
+            this.gameCount = gameCount;
+            this.priority = priority;
+            this.seeded = true;
+            this.seed = seed;
+            this.antithetic = antithetic;
+            this.firstGame = firstGame;
+            this.gameWinTurns = gameWinTurns;
+            this.batch = batch;
+        }
+
+        @Override
+        public int compareTo(Task other){
+            int byPriority = Integer.compare(getRank(), other.getRank());
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+
+        private int getRank(){
+            // stopping workers goes before any deck
+            return deck == null ? -1 : priority.ordinal();
+        }
+    }
+}
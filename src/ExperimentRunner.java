@@ -0,0 +1,600 @@
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ExperimentRunner runs the genetic algorithm headlessly for a list of experiments read from a JSON file, and
+ * writes the results as JSON, so parameter sweeps can run unattended instead of editing Main for each one.
+ *
+ * All experiments share one EvaluationService, so the worker threads stay busy while one experiment is breeding its
+ * next generation and another is playing games. The results file is rewritten each time an experiment finishes, so
+ * an interrupted sweep keeps the results it already has.
+ *
+ * The experiment file is an object with these keys, all optional except experiments:
+ *   threads              The number of worker threads playing games. The default is the number of processors.
+ *   parallelExperiments  The number of experiments run at once. The default is all of them.
+ *   batchEvaluation      Whether games are played in batches (see Genetics.setBatchEvaluation).
+ *   results              The results file, if it isn't given on the command line.
+ *   defaults             Experiment settings shared by every experiment, which an experiment can override.
+ *   experiments          An array of experiments.
+ *
+ * Each experiment has these keys, and needs generations, seconds, or both:
+ *   name                 The name of the experiment in the results.
+ *   cards                The names of the cards in the card pool. The default is every card.
+ *   cardFile             MTG JSON card data to take the cards from instead of CardCatalog.allCards (see JsonCard).
+ *   generationSize, mutationChance, cardSwapRate, deckRunCount, adaptiveEvaluation, curveScreen, antithetic,
+ *   steadyState, offspringCount
+ *                        The Genetics parameters of the same names.
+ *   selection            "skewed", "tournament", "rank" or "truncation" (see Selection), with selectionPressure as
+ *                        the tournament size, rank pressure or truncation fraction. The default is skewed.
+ *   objective            "meanWinTurn", "winTurnPercentile" or "winByTurn", with objectiveParameter as the
+ *                        percentile or turn.
+ *   generations          The most generations to run.
+ *   seconds              The most seconds to run generations for.
+ *   finalRunCount        The number of games each deck of the final generation plays. The default is 10000.
+ *   bestDecks            The number of best decks in the results. The default is 1.
+ *   refineSeconds        The seconds to refine the best deck for with LocalSearch afterwards. The refined deck
+ *                        plays finalRunCount games and is written as refined. The default is not to refine.
+ *   refineStrategy       "hillClimbing" or "simulatedAnnealing" (see LocalSearch.Strategy).
+ *   refineCandidates     The random neighbors simulated annealing compares each step (see
+ *                        LocalSearch.setCandidateCount).
+ *   seed                 The seed that makes the experiment reproducible. Without it, every run differs.
+ *   repeats              The number of times to run the experiment, with the seeds seed, seed + 1, and so on.
+ *
+ * Usage:
+ * java ExperimentRunner experiments.json [results.json]
+ */
+public class ExperimentRunner {
+
+    private static final int DEFAULT_FINAL_RUN_COUNT = 10000;
+    private static final int DEFAULT_BEST_DECKS = 1;
+    // The quantiles of the win turns written for each deck
+    private static final double[] QUANTILES = {0.1, 0.25, 0.5, 0.75, 0.9};
+
+    private static final Set<String> EXPERIMENT_KEYS = new HashSet<>(Arrays.asList(
+            "name", "cards", "cardFile", "generationSize", "mutationChance", "cardSwapRate", "deckRunCount",
+            "adaptiveEvaluation", "curveScreen", "antithetic", "steadyState", "offspringCount",
+            "selection", "selectionPressure", "objective", "objectiveParameter", "generations", "seconds",
+            "finalRunCount", "bestDecks", "refineSeconds", "refineStrategy", "refineCandidates", "seed",
+            "repeats"));
+    private static final Set<String> FILE_KEYS = new HashSet<>(Arrays.asList(
+            "threads", "parallelExperiments", "batchEvaluation", "results", "defaults", "experiments"));
+
+    private final List<Experiment> experiments = new ArrayList<>();
+    private final int threadCount;
+    private final int parallelExperiments;
+    private final boolean batchEvaluation;
+    private final Path resultsFile;
+
+    // the results of the finished experiments, by their position in the experiment list
+    private final Map<Integer, Result> results = new TreeMap<>();
+    // the cards of each card file, so a file shared by several experiments is only loaded once
+    private final Map<String, List<Card>> cardFiles = new HashMap<>();
+
+    /**
+     * Reads an experiment file. Every experiment is checked before any runs, so a mistake in the last one doesn't
+     * surface hours into the sweep.
+     * @param experimentFile The experiment file.
+     * @param resultsFile The file to write results to, or null to use the one in the experiment file.
+     * @throws IOException If the experiment file can't be read.
+     * @throws IllegalArgumentException If the experiment file isn't valid.
+     */
+    public ExperimentRunner(Path experimentFile, Path resultsFile) throws IOException {
+        JsonObject file;
+
+        try(Reader reader = Files.newBufferedReader(experimentFile, StandardCharsets.UTF_8)){
+            JsonElement element = new JsonParser().parse(reader);
+
+            if(!element.isJsonObject()){
+                throw new IllegalArgumentException(experimentFile + " must contain a JSON object");
+            }
+            file = element.getAsJsonObject();
+        }
+
+        checkKeys(file, FILE_KEYS, experimentFile.toString());
+
+        threadCount = getInt(file, "threads", Runtime.getRuntime().availableProcessors(), 1);
+        batchEvaluation = getBoolean(file, "batchEvaluation", true);
+
+        if(resultsFile == null){
+            if(!file.has("results")){
+                throw new IllegalArgumentException("no results file was given");
+            }
+            resultsFile = experimentFile.resolveSibling(file.get("results").getAsString());
+        }
+        this.resultsFile = resultsFile;
+
+        JsonObject defaults = file.has("defaults") ? file.getAsJsonObject("defaults") : new JsonObject();
+        checkKeys(defaults, EXPERIMENT_KEYS, "defaults");
+
+        if(!file.has("experiments") || !file.get("experiments").isJsonArray()){
+            throw new IllegalArgumentException(experimentFile + " must have an experiments array");
+        }
+
+        JsonArray list = file.getAsJsonArray("experiments");
+        for(int i = 0; i < list.size(); i++){
+            JsonObject settings = new JsonObject();
+
+            for(Map.Entry<String, JsonElement> entry : defaults.entrySet()){
+                settings.add(entry.getKey(), entry.getValue());
+            }
+            for(Map.Entry<String, JsonElement> entry : list.get(i).getAsJsonObject().entrySet()){
+                settings.add(entry.getKey(), entry.getValue());
+            }
+
+            String name = settings.has("name") ? settings.get("name").getAsString() : "experiment " + (i + 1);
+            checkKeys(settings, EXPERIMENT_KEYS, name);
+
+            int repeats = getInt(settings, "repeats", 1, 1);
+            for(int repeat = 0; repeat < repeats; repeat++){
+                experiments.add(new Experiment(repeats == 1 ? name : name + " #" + (repeat + 1), settings, repeat));
+            }
+        }
+
+        parallelExperiments = getInt(file, "parallelExperiments", Math.max(experiments.size(), 1), 1);
+    }
+
+    /**
+     * Runs every experiment, writing the results file as they finish.
+     * @throws IOException If a card file or the results file can't be read or written.
+     * @throws InterruptedException If the thread is interrupted while experiments are running.
+     */
+    public void run() throws IOException, InterruptedException {
+        ExecutorService drivers = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(parallelExperiments, experiments.size())));
+
+        try(EvaluationService service = new EvaluationService(threadCount)){
+            List<Future<?>> runs = new ArrayList<>();
+
+            for(int i = 0; i < experiments.size(); i++){
+                final int index = i;
+                final Experiment experiment = experiments.get(i);
+
+                runs.add(drivers.submit(() -> {
+                    Result result;
+                    try{
+                        result = experiment.run(service);
+                    }
+                    catch(Exception e){
+                        System.out.println("[" + experiment.name + "] failed: " + e);
+                        result = new Result(experiment, e);
+                    }
+
+                    finish(index, result);
+                    return null;
+                }));
+            }
+
+            for(Future<?> run : runs){
+                try{
+                    run.get();
+                }
+                catch(ExecutionException e){
+                    Throwable cause = e.getCause();
+                    if(cause instanceof IOException){
+                        throw (IOException) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        }
+        finally{
+            drivers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The file the results are written to.
+     */
+    public Path getResultsFile(){
+        return resultsFile;
+    }
+
+    private synchronized void finish(int index, Result result) throws IOException {
+        results.put(index, result);
+
+        // written next to the results and then moved, so the results file is never half written
+        Path temp = resultsFile.resolveSibling(resultsFile.getFileName() + ".tmp");
+
+        try(JsonWriter writer = new JsonWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))){
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("experiments").beginArray();
+
+            for(Result finished : results.values()){
+                finished.write(writer);
+            }
+
+            writer.endArray();
+            writer.endObject();
+        }
+
+        Files.move(temp, resultsFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private synchronized List<Card> getCardFile(String path) throws IOException {
+        List<Card> cards = cardFiles.get(path);
+
+        if(cards == null){
+            cards = JsonCard.load(Paths.get(path));
+            cardFiles.put(path, cards);
+        }
+
+        return cards;
+    }
+
+    private static void checkKeys(JsonObject object, Set<String> keys, String where){
+        for(Map.Entry<String, JsonElement> entry : object.entrySet()){
+            if(!keys.contains(entry.getKey())){
+                throw new IllegalArgumentException(where + " has an unknown setting: " + entry.getKey());
+            }
+        }
+    }
+
+    private static int getInt(JsonObject object, String key, int defaultValue, int min){
+        if(!object.has(key)){
+            return defaultValue;
+        }
+
+        int value = object.get(key).getAsInt();
+        if(value < min){
+            throw new IllegalArgumentException(key + " must be at least " + min + ", was " + value);
+        }
+
+        return value;
+    }
+
+    private static float getFraction(JsonObject object, String key, float defaultValue){
+        if(!object.has(key)){
+            return defaultValue;
+        }
+
+        float value = object.get(key).getAsFloat();
+        if(!(value >= 0 && value <= 1)){
+            throw new IllegalArgumentException(key + " must be from 0 to 1, was " + value);
+        }
+
+        return value;
+    }
+
+    private static boolean getBoolean(JsonObject object, String key, boolean defaultValue){
+        return object.has(key) ? object.get(key).getAsBoolean() : defaultValue;
+    }
+
+    /**
+     * A single run of an experiment, with its settings checked.
+     */
+    private class Experiment {
+        final String name;
+        final String[] cards;
+        final String cardFile;
+        final JsonObject settings;
+        final DeckStats.Objective objective;
+        final double objectiveParameter;
+        final String selection;
+        final double selectionPressure;
+        final int generations;
+        final int seconds;
+        final int finalRunCount;
+        final int bestDecks;
+        final int refineSeconds;
+        final LocalSearch.Strategy refineStrategy;
+        final Long seed;
+
+        Experiment(String name, JsonObject settings, int repeat){
+            this.name = name;
+            this.settings = settings;
+
+            if(settings.has("cards")){
+                JsonArray names = settings.getAsJsonArray("cards");
+                cards = new String[names.size()];
+
+                for(int i = 0; i < cards.length; i++){
+                    cards[i] = names.get(i).getAsString();
+                }
+            }
+            else{
+                cards = null;
+            }
+            cardFile = settings.has("cardFile") ? settings.get("cardFile").getAsString() : null;
+
+            String objectiveName = settings.has("objective") ? settings.get("objective").getAsString() : null;
+            objective = objectiveName == null ? DeckStats.Objective.MeanWinTurn : getObjective(objectiveName);
+            objectiveParameter = settings.has("objectiveParameter")
+                    ? settings.get("objectiveParameter").getAsDouble() : 0;
+
+            selection = settings.has("selection") ? settings.get("selection").getAsString() : "skewed";
+            selectionPressure = settings.has("selectionPressure")
+                    ? settings.get("selectionPressure").getAsDouble() : Double.NaN;
+            createSelection();
+
+            generations = getInt(settings, "generations", Integer.MAX_VALUE, 1);
+            seconds = getInt(settings, "seconds", Integer.MAX_VALUE, 1);
+            if(!settings.has("generations") && !settings.has("seconds")){
+                throw new IllegalArgumentException(name + " needs generations or seconds");
+            }
+
+            finalRunCount = getInt(settings, "finalRunCount", DEFAULT_FINAL_RUN_COUNT, 1);
+            bestDecks = getInt(settings, "bestDecks", DEFAULT_BEST_DECKS, 1);
+            refineSeconds = getInt(settings, "refineSeconds", 0, 0);
+            refineStrategy = settings.has("refineStrategy")
+                    ? getStrategy(settings.get("refineStrategy").getAsString()) : LocalSearch.Strategy.HillClimbing;
+            seed = settings.has("seed") ? settings.get("seed").getAsLong() + repeat : null;
+
+            // the card names are checked here, unless they come from a card file, which isn't loaded yet
+            if(cardFile == null && cards != null){
+                new CardCatalog(cards);
+            }
+
+            getInt(settings, "generationSize", 0, 2);
+            getInt(settings, "deckRunCount", 0, 1);
+            getInt(settings, "offspringCount", 1, 1);
+            getFraction(settings, "mutationChance", 0);
+            getFraction(settings, "cardSwapRate", 0);
+
+            if(objective == DeckStats.Objective.WinTurnPercentile
+                    && !(objectiveParameter > 0 && objectiveParameter <= 100)){
+                throw new IllegalArgumentException(name + " needs an objectiveParameter above 0 and at most 100");
+            }
+            if(objective == DeckStats.Objective.WinByTurn
+                    && (objectiveParameter < 1 || objectiveParameter > Game.MAX_TURN)){
+                throw new IllegalArgumentException(name + " needs an objectiveParameter from 1 to " + Game.MAX_TURN);
+            }
+        }
+
+        private DeckStats.Objective getObjective(String objectiveName){
+            for(DeckStats.Objective value : DeckStats.Objective.values()){
+                if(value.name().equalsIgnoreCase(objectiveName)){
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException(name + " has an unknown objective: " + objectiveName);
+        }
+
+        /**
+         * Creates the experiment's selection. Each run needs its own, since a selection keeps the results it was
+         * prepared with.
+         */
+        private Selection createSelection(){
+            boolean hasPressure = !Double.isNaN(selectionPressure);
+
+            switch(selection.toLowerCase()){
+                case "skewed":
+                    return new Selection.Skewed();
+                case "tournament":
+                    if(hasPressure && selectionPressure != Math.rint(selectionPressure)){
+                        throw new IllegalArgumentException(name + " needs a whole tournament size as selectionPressure");
+                    }
+                    return new Selection.Tournament(hasPressure ? (int) selectionPressure : 2);
+                case "rank":
+                    return new Selection.Rank(hasPressure ? selectionPressure : 1.5);
+                case "truncation":
+                    return new Selection.Truncation(hasPressure ? selectionPressure : 0.2);
+                default:
+                    throw new IllegalArgumentException(name + " has an unknown selection: " + selection);
+            }
+        }
+
+        private LocalSearch.Strategy getStrategy(String strategyName){
+            for(LocalSearch.Strategy value : LocalSearch.Strategy.values()){
+                if(value.name().equalsIgnoreCase(strategyName)){
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException(name + " has an unknown refineStrategy: " + strategyName);
+        }
+
+        private Genetics configure(Genetics genetics){
+            genetics.setGenerationSize(getInt(settings, "generationSize", genetics.getGenerationSize(), 2));
+            genetics.setDeckRunCount(getInt(settings, "deckRunCount", genetics.getDeckRunCount(), 1));
+            genetics.setAdaptiveEvaluation(getBoolean(settings, "adaptiveEvaluation", genetics.isAdaptiveEvaluation()));
+            genetics.setCurveScreen(getBoolean(settings, "curveScreen", genetics.isCurveScreen()));
+            genetics.setAntithetic(getBoolean(settings, "antithetic", genetics.isAntithetic()));
+            genetics.setSteadyState(getBoolean(settings, "steadyState", genetics.isSteadyState()));
+            genetics.setOffspringCount(getInt(settings, "offspringCount", genetics.getOffspringCount(), 1));
+            genetics.setBatchEvaluation(batchEvaluation);
+            genetics.setSelection(createSelection());
+
+            genetics.setMutationChance(getFraction(settings, "mutationChance", genetics.getMutationChance()));
+            genetics.setCardSwapRate(getFraction(settings, "cardSwapRate", genetics.getCardSwapRate()));
+
+            if(objective == DeckStats.Objective.WinTurnPercentile){
+                genetics.rankByWinTurnPercentile(objectiveParameter);
+            }
+            else if(objective == DeckStats.Objective.WinByTurn){
+                genetics.rankByWinByTurn((int) objectiveParameter);
+            }
+
+            return genetics;
+        }
+
+        private CardCatalog createCatalog() throws IOException {
+            if(cardFile == null){
+                return cards == null ? new CardCatalog() : new CardCatalog(cards);
+            }
+
+            List<Card> pool = getCardFile(cardFile);
+            if(cards == null){
+                return new CardCatalog(pool);
+            }
+
+            List<Card> chosen = new ArrayList<>();
+            for(String cardName : cards){
+                Card card = pool.stream().filter((o) -> o.name.equals(cardName)).findFirst().orElseThrow(
+                        () -> new IllegalArgumentException(cardFile + " has no playable card named " + cardName));
+                chosen.add(card);
+            }
+
+            return new CardCatalog(chosen);
+        }
+
+        Result run(EvaluationService service) throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+            // each run has its own catalog, since a seeded Genetics object reseeds its catalog's Random
+            CardCatalog catalog = createCatalog();
+            Genetics genetics = configure(seed == null ? new Genetics(catalog) : new Genetics(catalog, seed));
+            genetics.setEvaluationService(service);
+
+            int generationsRun = 0;
+            while(generationsRun < generations && System.nanoTime() - end < 0){
+                genetics.evaluateGeneration();
+                generationsRun++;
+
+                System.out.println("[" + name + "] Gen " + genetics.getGenerationCount() + ": best average win turn "
+                        + genetics.getGeneration().get(0).getAverageWinTurn());
+
+                genetics.nextGeneration();
+            }
+
+            genetics.evaluateGeneration(finalRunCount);
+            List<RankedDeck> decks = genetics.getBestDecks(bestDecks);
+
+            RankedDeck refined = null;
+            if(refineSeconds > 0){
+                LocalSearch localSearch = seed == null ? new LocalSearch(catalog) : new LocalSearch(catalog, seed);
+                localSearch.setStrategy(refineStrategy);
+                localSearch.setCandidateCount(getInt(settings, "refineCandidates", localSearch.getCandidateCount(), 1));
+                localSearch.setEvaluationService(service);
+                localSearch.setProgress(message -> System.out.println("[" + name + "] " + message));
+
+                // a copy without the search's results, so it is played the same number of games as the others
+                refined = localSearch.refine(decks.get(0), refineSeconds).copy();
+                try{
+                    service.submit(refined, finalRunCount).get();
+                }
+                catch(ExecutionException e){
+                    throw new IllegalStateException("A worker failed while playing the refined deck", e.getCause());
+                }
+            }
+
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            System.out.println("[" + name + "] Finished " + generationsRun + " generations in " + elapsed + " seconds");
+            return new Result(this, catalog, decks, refined, generationsRun, elapsed);
+        }
+    }
+
+    /**
+     * The outcome of an experiment: its best decks, or the error that stopped it.
+     */
+    private static class Result {
+        final Experiment experiment;
+        final CardCatalog catalog;
+        final List<RankedDeck> decks;
+        final RankedDeck refined;
+        final int generations;
+        final double seconds;
+        final String error;
+
+        Result(Experiment experiment, CardCatalog catalog, List<RankedDeck> decks, RankedDeck refined, int generations,
+               double seconds){
+            this.experiment = experiment;
+            this.catalog = catalog;
+            this.decks = decks;
+            this.refined = refined;
+            this.generations = generations;
+            this.seconds = seconds;
+            error = null;
+        }
+
+        Result(Experiment experiment, Exception error){
+            this.experiment = experiment;
+            catalog = null;
+            decks = Collections.emptyList();
+            refined = null;
+            generations = 0;
+            seconds = 0;
+            this.error = error.toString();
+        }
+
+        void write(JsonWriter writer) throws IOException {
+            writer.beginObject();
+            writer.name("name").value(experiment.name);
+            if(experiment.seed != null){
+                writer.name("seed").value(experiment.seed);
+            }
+            writer.name("objective").value(experiment.objective.name());
+            writer.name("objectiveParameter").value(experiment.objectiveParameter);
+
+            if(error != null){
+                writer.name("error").value(error);
+                writer.endObject();
+                return;
+            }
+
+            writer.name("generations").value(generations);
+            writer.name("seconds").value(seconds);
+            writer.name("decks").beginArray();
+
+            for(RankedDeck deck : decks){
+                writeDeck(writer, deck);
+            }
+
+            writer.endArray();
+
+            if(refined != null){
+                writer.name("refined");
+                writeDeck(writer, refined);
+            }
+
+            writer.endObject();
+        }
+
+        private void writeDeck(JsonWriter writer, RankedDeck deck) throws IOException {
+            DeckStats stats = deck.getStats();
+
+            writer.beginObject();
+            writer.name("averageWinTurn").value(stats.getAverageWinTurn());
+            writer.name("standardError").value(stats.getStandardError());
+            writer.name("score").value(stats.getScore(experiment.objective, experiment.objectiveParameter));
+            writer.name("runCount").value(stats.getRunCount());
+
+            writer.name("winTurnQuantiles").beginObject();
+            for(double quantile : QUANTILES){
+                writer.name(String.valueOf(quantile)).value(stats.getWinTurnQuantile(quantile));
+            }
+            writer.endObject();
+
+            // the number of games won on each turn, from turn 0 to Game.MAX_TURN
+            writer.name("winTurnCounts").beginArray();
+            for(int turn = 0; turn < DeckStats.WIN_TURNS; turn++){
+                writer.value(stats.getWinTurnCount(turn));
+            }
+            writer.endArray();
+
+            writer.name("cards").beginObject();
+            for(int i = 0; i < catalog.getCatalogSize(); i++){
+                if(deck.getCount(i) > 0){
+                    writer.name(catalog.getCardAt(i).name).value(deck.getCount(i));
+                }
+            }
+            writer.endObject();
+
+            writer.endObject();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 1){
+            System.out.println("Usage: ExperimentRunner experiments.json [results.json]");
+            System.exit(1);
+        }
+
+        ExperimentRunner runner = new ExperimentRunner(Paths.get(args[0]), args.length > 1 ? Paths.get(args[1]) : null);
+        runner.run();
+
+        System.out.println("Results written to " + runner.getResultsFile());
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FitnessCache remembers the results of decks that have already been played, keyed by the cards in the deck.
+ *
+ * Breeding often produces a deck with exactly the same cards as one that was already evaluated, and a converged
+ * generation is mostly duplicates. Instead of playing those decks again from zero, the cache hands them the existing
+ * DeckStats, so new games add to the results already recorded and a deck that has played enough games is skipped.
+ *
+ * Usage:
+ * Call getStats with a deck, and use the returned DeckStats for it. The cache holds at most maxSize decks, evicting
+ * the least recently used or the oldest deck first, and is safe to use from several threads.
+ */
+public class FitnessCache {
+
+    enum Eviction {
+        LeastRecentlyUsed,
+        FirstInFirstOut
+    }
+
+    private final int maxSize;
+    private final Eviction eviction;
+    private final Map<Key, DeckStats> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a FitnessCache that evicts the least recently used deck.
+     * @param maxSize The maximum number of decks to remember.
+     */
+    public FitnessCache(int maxSize){
+        this(maxSize, Eviction.LeastRecentlyUsed);
+    }
+
+    /**
+     * Creates a FitnessCache.
+     * @param maxSize The maximum number of decks to remember.
+     * @param eviction Which deck is forgotten when the cache is full.
+     */
+    public FitnessCache(int maxSize, Eviction eviction){
+        if(maxSize < 1){
+            throw new IllegalArgumentException("maxSize must be at least 1, was " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+        this.eviction = eviction;
+        this.entries = new LinkedHashMap<Key, DeckStats>(16, 0.75f, eviction == Eviction.LeastRecentlyUsed) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, DeckStats> eldest) {
+                if(size() > FitnessCache.this.maxSize){
+                    evictions.increment();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the results recorded for decks with the same cards as a deck. If there are none, the deck's own
+     * DeckStats are remembered and returned.
+     * @param deck The deck to look up.
+     * @return The DeckStats the deck should use.
+     */
+    public DeckStats getStats(RankedDeck deck){
+        Key key = new Key(deck);
+
+        synchronized (entries) {
+            DeckStats stats = entries.get(key);
+
+            if (stats != null) {
+                hits.increment();
+                return stats;
+            }
+
+            misses.increment();
+            entries.put(key, deck.getStats());
+            return deck.getStats();
+        }
+    }
+
+    /**
+     * Forgets every deck. The hit and miss counts are kept.
+     */
+    public void clear(){
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return The number of decks currently remembered.
+     */
+    public int size(){
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    public Eviction getEviction(){
+        return eviction;
+    }
+
+    /**
+     * @return The number of lookups that found an existing deck.
+     */
+    public long getHits(){
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that didn't find an existing deck.
+     */
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of decks forgotten because the cache was full.
+     */
+    public long getEvictions(){
+        return evictions.sum();
+    }
+
+    /**
+     * @return The fraction of lookups that found an existing deck, or 0 if there have been no lookups.
+     */
+    public double getHitRate(){
+        long hits = getHits();
+        long total = hits + getMisses();
+
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString(){
+        return "Fitness cache: " + size() + "/" + maxSize + " decks, " + getHits() + " hits, " + getMisses()
+                + " misses, " + getEvictions() + " evictions";
+    }
+
+    /**
+     * The cards in a deck, copied so later changes to the deck don't change the key.
+     */
+    private static final class Key {
+        private final CardCatalog catalog;
+        private final int[] counts;
+        private final long hash;
+
+        Key(RankedDeck deck){
+            catalog = deck.cardCatalog;
+            counts = deck.getCounts();
+            hash = deck.getCompositionHash();
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key)){
+                return false;
+            }
+
+            Key other = (Key) o;
+            return hash == other.hash && catalog == other.catalog && Arrays.equals(counts, other.counts);
+        }
+
+        @Override
+        public int hashCode(){
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
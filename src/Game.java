@@ -4,7 +4,6 @@
  import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.stream.Collectors;
 
  /***
   * Game contains the logic used when played a "Goldfish" game, or a game with an enemy that is nothing more than a life
@@ -19,11 +18,25 @@ import java.util.stream.Collectors;
 public class Game {
     final private static Logger log = LoggerFactory.getLogger(Game.class);
     final public static boolean DEBUG = false;
+    // The turn a game is given up on, if the enemy is still alive
+    final static int MAX_TURN = 12;
 
 	Player player;
 	Enemy enemy;
 	int turn;
 
+	// reused by findBestPlay every turn
+	private final PlaySearch playSearch = new PlaySearch();
+	private final List<Card> candidates = new ArrayList<>();
+	private final List<Card> bestPlay = new ArrayList<>();
+
+	// one game in SimulationMetrics.SAMPLE_INTERVAL is timed, from its reset to its last turn
+	private int gamesUntilSample = 1;
+	private boolean sampling;
+	private long sampleStart;
+	private long findBestPlayNanos;
+	private long attackNanos;
+
      /**
       * Creates a new Game with a Player using a random deck.
       */
@@ -38,48 +51,135 @@ public class Game {
       * @param deck The Deck used by the player.
       */
 	public Game(Deck deck){
-		player = new Player("Good", deck.copy());
+		this(deck, new Random());
+	}
+
+     /**
+      * Creates a new Game with a Player using a specific deck and random number generator.
+      * @param deck The Deck used by the player.
+      * @param rand The Random used to shuffle the player's deck.
+      */
+	public Game(Deck deck, Random rand){
+		player = new Player("Good", deck.copy(), rand);
 		enemy = new Enemy();
 		turn = 0;
 	}
 
+     /**
+      * Creates a new Game with a Player using an empty deck. Use setDeck to give the player a deck, then call
+      * playGame and reset for each game. Reusing one Game this way avoids allocating a new game for every run.
+      * @param rand The Random used to shuffle the player's deck.
+      */
+	public Game(Random rand){
+		this(new Deck(), rand);
+	}
+
+     /**
+      * Gives the player a copy of a deck and resets the game.
+      * @param deck The Deck used by the player.
+      */
+	public void setDeck(Deck deck){
+		player.setDeck(deck);
+		reset();
+	}
+
+     /**
+      * Gives the player a Deck of a deck list's cards and resets the game.
+      * @param deck The deck list used by the player.
+      */
+	public void setDeck(RankedDeck deck){
+		player.setDeck(deck);
+		reset();
+	}
+
+     /**
+      * Resets the game so it can be played again: the player's deck is restored to the order it was saved in,
+      * shuffled, and a new opening hand is drawn.
+      */
+	public void reset(){
+		startSample();
+		player.reset();
+		enemy.life = Enemy.STARTING_LIFE;
+		turn = 0;
+	}
+
+     /**
+      * Resets the game with a seeded shuffle and mulligans, so every game reset with the same seed gets the same
+      * luck: the cards two decks share are drawn in the same order. The seed, not the Game's Random, decides the
+      * shuffle and mulligans.
+      * @param seed The seed for the game.
+      * @param antithetic True to give the game the opposite luck of the seed (see PairedRandom).
+      */
+	public void reset(long seed, boolean antithetic){
+		startSample();
+		player.reset(seed, antithetic);
+		enemy.life = Enemy.STARTING_LIFE;
+		turn = 0;
+	}
+
      /**
       * Plays an entire game of Magic, and returns the turn the game finished.
       * @return The turn the the player won on.
       */
 	public int playGame(){
+		long mulliganStart = sampling ? System.nanoTime() : 0;
 
         // mulligan logic
-        int landsInHand = player.hand.stream()
-                .filter((c) -> c.type == Card.CardType.Land)
-                .collect(Collectors.toList())
-                .size();
+        int landsInHand = countLandsInHand();
 
         while (player.hand.size() > 5 && (landsInHand >= 5 || landsInHand < 1)){
             //debug("Mulliganning hand: " + player.hand.toString());
             player.mulligan();
-            landsInHand = player.hand.stream()
-                    .filter((c) -> c.type == Card.CardType.Land)
-                    .collect(Collectors.toList())
-                    .size();
+            landsInHand = countLandsInHand();
         }
 
         //debug("Kept hand: " + player.hand.toString());
 
-        // play till the win
-		while(enemy.life > 0){
-
-			// if the deck sucks, return early
-			if(turn >= 12){
-				return turn;
-			}
+		long mulliganNanos = sampling ? System.nanoTime() - mulliganStart : 0;
 
+        // play till the win, or return early if the deck sucks
+		while(enemy.life > 0 && turn < MAX_TURN){
 			playTurn();
 		}
 
+		if(sampling){
+			sampling = false;
+			SimulationMetrics.getInstance().recordSample(
+					System.nanoTime() - sampleStart, mulliganNanos, findBestPlayNanos, attackNanos);
+		}
+
 		return turn;
 	}
 
+     /**
+      * Starts timing the next game, if it is the one to sample.
+      */
+	private void startSample(){
+		// a game reset twice before it is played is still sampled, timed from the last reset
+		if(sampling || --gamesUntilSample == 0){
+			sampling = true;
+			gamesUntilSample = SimulationMetrics.SAMPLE_INTERVAL;
+			findBestPlayNanos = 0;
+			attackNanos = 0;
+			sampleStart = System.nanoTime();
+		}
+	}
+
+     /**
+      * @return The number of land cards in the player's hand.
+      */
+	private int countLandsInHand(){
+		int lands = 0;
+
+		for(int i = 0; i < player.hand.size(); i++){
+			if(player.hand.get(i).type == Card.CardType.Land){
+				lands++;
+			}
+		}
+
+		return lands;
+	}
+
      /**
       * The logic used to play a single turn of Magic.
       */
@@ -87,17 +187,30 @@ public class Game {
 		upkeep();
 
 		// play a (random) land for the turn
-        Optional<Card> landToPlay = player.hand.stream().filter((c) -> c.type == Card.CardType.Land).findFirst();
-        if(landToPlay.isPresent()) {
-            player.play(landToPlay.get());
+        for(int i = 0; i < player.hand.size(); i++){
+            if(player.hand.get(i).type == Card.CardType.Land){
+                player.play(player.hand.get(i));
+                break;
+            }
         }
 
 		// add all mana we have available this turn to our mana pool (simplified)
 		player.mana = player.lands.size();
 
-        List<Card> cardsToPlay = findBestPlay();
+        List<Card> cardsToPlay;
+
+        if(sampling){
+            long start = System.nanoTime();
+            cardsToPlay = findBestPlay();
+            findBestPlayNanos += System.nanoTime() - start;
+        }
+        else{
+            cardsToPlay = findBestPlay();
+        }
+
+        for(int i = 0; i < cardsToPlay.size(); i++){
+            Card card = cardsToPlay.get(i);
 
-        for(Card card : cardsToPlay){
             if(card.type == Card.CardType.Creature) {
                 player.play(card);
             }
@@ -106,7 +219,14 @@ public class Game {
             }
         }
 
-		attack();
+		if(sampling){
+			long start = System.nanoTime();
+			attack();
+			attackNanos += System.nanoTime() - start;
+		}
+		else{
+			attack();
+		}
 
 		endOfTurn();
 	}
@@ -131,7 +251,7 @@ public class Game {
             //debug("Drew " + drawnCard.name);
         }
 		//debug("Hand: " + player.hand.toString());
-		//debug("Creatures: " + player.creatures.toString());
+		//debug("Creatures: " + player.battlefield.toString());
 		//debug("Lands: " + player.lands.toString());
 	}
 
@@ -147,100 +267,53 @@ public class Game {
       * Attacks with every creature that can attack.
       */
 	private void attack(){
-		int damage = 0;
-        List<String> attackingCreatures = new ArrayList<>();
-
-        for(int i = 0; i < player.creatures.size(); i++){
-            if(player.creatures.get(i).canAttack()) {
-
-                attackingCreatures.add(player.creatures.get(i).name);
-                damage += player.creatures.get(i).attack;
-                player.creatures.get(i).tapped = true;
-
-            }
-		}
+		int damage = player.battlefield.attackWithAll();
 
 		enemy.life -= damage;
-		if(attackingCreatures.size() > 0){
-            //debug("Attacked with " + StringUtils.join(attackingCreatures, ", ") + " for " + damage + " damage.");
+
+		if(damage > 0){
+            //debug("Attacked for " + damage + " damage.");
         }
 	}
 
      /**
-      * Finds the best combination of cards to play for the turn. Currently the second most expensive function in
-      * the program.
+     * Finds the best combination of cards to play for the turn.
       * @return A list containing the cards determined to be the best play.
       */
-    private List<Card> findBestPlay(){
-        List<Card> nonlands = player.hand.stream()
-                .filter((c) -> c.type != Card.CardType.Land)
-                .filter((c) -> c.cost <= player.mana)
-                .collect(Collectors.toList());
-
-        Set<PossiblePlay> possiblePlays = constructPossiblePlays(new PossiblePlay(nonlands));
-
-
-        possiblePlays = possiblePlays.stream()
-                .filter((p) -> p.getTotalCost() <= player.mana)
-                .collect(Collectors.toSet());
+    List<Card> findBestPlay(){
+        candidates.clear();
+        playSearch.clear();
 
-        ////debug("Possible plays: " + possiblePlays.toString());
+        for(int i = 0; i < player.hand.size(); i++){
+            Card card = player.hand.get(i);
 
-        int totalCreatureAttack = 0;
-
-        for(Creature c : player.creatures){
-            if(c.canAttack()){
-                totalCreatureAttack += c.attack;
+            if(card.type != Card.CardType.Land && card.cost <= player.mana){
+                candidates.add(card);
+                playSearch.add(card);
             }
         }
 
-        // killPlay does the most damage this turn, used if we can get the kill this turn
-        PossiblePlay killPlay = possiblePlays.stream()
-                .max((o1, o2) -> Double.compare(o1.getTurnPlayRank(), o2.getTurnPlayRank())).get();
+        int totalCreatureAttack = player.battlefield.getAvailableAttack();
 
-        // overallPlay invests in recurring attack damage, so there is less damage this turn, but more next turn
-        PossiblePlay overallPlay = possiblePlays.stream()
-                .max((o1, o2) -> Double.compare(o1.getOverallPlayRank(), o2.getOverallPlayRank())).get();
+        // the kill play does the most damage this turn, used if we can get the kill this turn
+        playSearch.search(player.mana, PlaySearch.Rank.Turn);
 
-        if(enemy.life - killPlay.getTurnDamage() - totalCreatureAttack <= 0){
-            return killPlay.toList();
+        if(enemy.life - playSearch.getChosenTurnDamage() - totalCreatureAttack > 0){
+            // the overall play invests in recurring attack damage, so there is less damage this turn, but more next turn
+            playSearch.search(player.mana, PlaySearch.Rank.Overall);
         }
 
-        return overallPlay.toList();
-    }
-
-
-     /**
-      * Constucts a power set of PossiblePlay objects using a PossiblePlay object containing all of the playable
-      *     cards that the player has in their hand.
-      *     This is the most expensive function in the program. todo: speed up.
-      * @param originalCards The players hand, used to create the power set.
-      * @return The power set of the players hand -- all possible plays that the player can make, not taking mana in
-      *     to account.
-      */
-    private Set<PossiblePlay> constructPossiblePlays(PossiblePlay originalCards){
-        Set<PossiblePlay> possiblePlays = new HashSet<>();
-
-        if(originalCards.isEmpty()){
-            possiblePlays.add(new PossiblePlay());
-            return possiblePlays;
-        }
-
-        List<Card> list = new ArrayList<>(originalCards.toList());
-        Card head = list.get(0);
-        PossiblePlay rest = new PossiblePlay(list.subList(1, list.size()));
-        for(PossiblePlay possiblePlay : constructPossiblePlays(rest)){
-            PossiblePlay newPlay = new PossiblePlay();
-            newPlay.addCard(head);
-            newPlay.addCards(possiblePlay);
-            possiblePlays.add(newPlay);
-            possiblePlays.add(possiblePlay);
+        bestPlay.clear();
 
+        for(int i = 0; i < candidates.size(); i++){
+            if(playSearch.isChosen(i)){
+                bestPlay.add(candidates.get(i));
+            }
         }
 
-        return possiblePlays;
+        return bestPlay;
     }
-    
+
     public static void debug(String str){
         if(DEBUG){
             System.out.println(str);
@@ -249,160 +322,3 @@ public class Game {
 
 }
 
-
-/**
- * PossiblePlay contains a list of cards that can be played for the current turn, and functions to evaluate the play.
- */
-class PossiblePlay {
-
-    List<Card> cards;
-    private boolean turnDamageCached;
-    private int turnDamage;
-    private boolean totalAttackCached;
-    private int totalAttack;
-    private boolean totalCostCached;
-    private int totalCost;
-
-    /**
-     * Creates a new, empty, PossiblePlay.
-     */
-    public PossiblePlay(){
-        cards = new ArrayList<>();
-    }
-
-    /**
-     * Creates a new PossiblePlay using the specified cards.
-     * @param cards The playable cards to evaluate
-     */
-    public PossiblePlay(List<Card> cards){
-        this.cards = new ArrayList<>(cards);
-    }
-
-    /**
-     * Invalidates the cached results of certain functions. Call when the list of cards is modified.
-     */
-    void invalidateCache(){
-        if(turnDamageCached) turnDamageCached = false;
-        if(totalAttackCached) totalAttackCached = false;
-        if(totalCostCached) totalCostCached = false;
-    }
-    
-    void addCard(Card c){
-        cards.add(c);
-        invalidateCache();
-    }
-
-    void addCards(Collection<Card> cardCollection){
-        cards.addAll(cardCollection);
-        invalidateCache();
-    }
-    
-    void addCards(PossiblePlay playCards){
-        cards.addAll(playCards.cards);
-        invalidateCache();
-    }
-
-    boolean removeCard(Card card){
-        return cards.remove(card);
-    }
-
-    Card removeCard(int index){
-        return cards.remove(index);
-    }
-
-    /**
-     * A play ranking function that prioritizes long-term damage.
-     * @return A higher-is-better rank of the play.
-     */
-    double getOverallPlayRank(){
-        return getTotalAttack() * 100 + getTurnDamage();
-    }
-
-    /***
-     * A play ranking function that prioritizes damage that can be dealt on the current turn.
-     * @return A higher-is-better rank of the play.
-     */
-    double getTurnPlayRank(){
-        return getTurnDamage() * 100 + getTotalAttack();
-    }
-
-    /**
-     * @return The amount of damage that this play will do on the current turn.
-     */
-    int getTurnDamage(){
-        if(!turnDamageCached) {
-            int damage = 0;
-
-            for (Card card : cards) {
-                if (card.type == Card.CardType.Spell) {
-                    damage += ((Spell) card).damage;
-                } else if (card.type == Card.CardType.Creature
-                        && ((Creature) card).hasAbility(Creature.Ability.Haste)) {
-                    damage += ((Creature) card).attack;
-                }
-            }
-
-            turnDamage = damage;
-            turnDamageCached = true;
-        }
-        
-        return turnDamage;
-    }
-
-    /**
-     * @return The amount of attack power that will be added to the board for this play.
-     */
-    int getTotalAttack(){
-        if(!totalAttackCached) {
-            int totalAttack = 0;
-
-            for (Card card : cards) {
-                if (card.type == Card.CardType.Creature) {
-                    totalAttack += ((Creature) card).attack;
-                }
-            }
-            
-            this.totalAttack = totalAttack;
-            totalAttackCached = true;
-        }
-
-        return this.totalAttack;
-    }
-
-    /**
-     * @return The total converted mana cost of the cards in this play.
-     */
-    int getTotalCost(){
-        if(!totalCostCached) {
-            int totalCost = 0;
-
-            for (Card c : cards) {
-                totalCost += c.cost;
-            }
-            
-            this.totalCost = totalCost;
-        }
-        
-        return totalCost;
-    }
-
-    List<Card> subList(int min, int max){
-        return cards.subList(min, max);
-    }
-
-    List<Card> toList(){
-        return cards;
-    }
-
-    int size(){
-        return cards.size();
-    }
-
-    boolean isEmpty(){
-        return cards.isEmpty();
-    }
-
-    public  String toString(){
-        return cards.toString();
-    }
-}
\ No newline at end of file
@@ -1,6 +1,14 @@
-import java.io.UncheckedIOException;
+import java.io.*;
 import java.lang.Math;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.*;
 
 
 /**
@@ -13,9 +21,12 @@ import java.util.*;
  * After construction, runForGenerations, runForSeconds, or runForMinutes should likely be called to evaluate the
  * decks in the generation. Alternatively, evalutateGeneration can be called for a more customized approach.
  *
+ * Long runs can write a checkpoint every few generations with setCheckpoint, and continue later from the last
+ * checkpoint with resume.
+ *
  * Note that a lower win turn is better. This is opposite of a more traditional fitness score.
  */
-public class Genetics {
+public class Genetics implements AutoCloseable {
 
     // The chance the two deck being bred will swap their cards.
     private final float DEFAULT_CARD_SWAP_RATE = 0.8f;
@@ -29,12 +40,75 @@ public class Genetics {
     // The number of games played to evaluate a deck
     private final int DEFAULT_DECK_RUN_COUNT = 500;
     private int deckRunCount;
+    // The number of worker threads used to evaluate a generation. One evaluates on the calling thread.
+    private final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    private int threadCount;
+    // The number of decks whose results are remembered, so duplicate decks don't start over
+    private final int DEFAULT_FITNESS_CACHE_SIZE = 4096;
+    private FitnessCache fitnessCache;
+    // Adaptive evaluation plays a generation in rounds, and stops playing decks that can't make the elite
+    private boolean adaptiveEvaluation;
+    // The number of games each deck plays per round of adaptive evaluation
+    private final int DEFAULT_ROUND_RUN_COUNT = 50;
+    private int roundRunCount;
+    // The fraction of a generation that adaptive evaluation tries to rank accurately
+    private final float DEFAULT_ELITE_FRACTION = 0.25f;
+    private float eliteFraction;
+    // The width, in standard errors, of the confidence intervals used by adaptive evaluation
+    private final double DEFAULT_CONFIDENCE_Z = 2.0;
+    private double confidenceZ;
+    // The most games, as a multiple of the run count, adaptive evaluation gives one deck in a generation
+    private static final int MAX_ADAPTIVE_RUN_MULTIPLIER = 2;
+    // The curve screen estimates each new deck's win turn from its mana curve, and only plays a few games with
+    // decks that can't make the elite
+    private boolean curveScreen;
+    // The number of games played by a deck that fails the curve screen
+    private final int DEFAULT_SCREENED_RUN_COUNT = 25;
+    private int screenedRunCount;
+    // The average win turn of the last deck in the elite of the last evaluated generation, or NaN before the first
+    private double eliteWinTurn = Double.NaN;
+    // The smallest difference seen between a deck's average win turn and its curve estimate
+    private double curveGap = Double.POSITIVE_INFINITY;
+    // Common random numbers give game n of every deck in a generation the same shuffles and mulligans
+    private boolean commonRandomNumbers;
+    // Antithetic pairs play every second common random numbers game with the opposite luck of the one before it
+    private boolean antithetic;
+    // The seed that common random numbers games' seeds come from
+    private long masterSeed;
+    // Batch evaluation plays each deck's games together with BatchGame, instead of one at a time with Game
+    private boolean batchEvaluation;
+    // Steady state breeds a few offspring at a time, which replace the worst decks, instead of a whole generation
+    private boolean steadyState;
+    // The number of offspring bred in each steady state step
+    private final int DEFAULT_OFFSPRING_COUNT = 8;
+    private int offspringCount;
+    // Selection chooses the parents of each new deck
+    private Selection selection;
+    // The file checkpoints are written to, or null to not write checkpoints
+    private Path checkpointFile;
+    // The number of generations between checkpoints
+    private final int DEFAULT_CHECKPOINT_INTERVAL = 1;
+    private int checkpointInterval;
+    // The objective decks are ranked by, and its percentile or turn
+    private final DeckStats.Objective DEFAULT_OBJECTIVE = DeckStats.Objective.MeanWinTurn;
+    private DeckStats.Objective objective;
+    private double objectiveParameter;
+
+    // "GFCP", the first bytes of a checkpoint file
+    private static final int CHECKPOINT_MAGIC = 0x47464350;
+    private static final int CHECKPOINT_VERSION = 5;
+    // a serialized Random is under a hundred bytes, so anything much longer isn't one
+    private static final int MAX_RANDOM_STATE_LENGTH = 1024;
 
     private int generationCount;
 
     private final CardCatalog cardCatalog;
     private List<RankedDeck> generation;
     private Random rand;
+    private EvaluationService evaluationService;
+    private boolean ownsEvaluationService = true;
+    private ExecutorService checkpointWriter;
+    private Future<?> lastCheckpoint;
 
     /**
      * Creates a new Genetics object with the entire card catalog.
@@ -48,27 +122,156 @@ public class Genetics {
      * @param cardCatalog The cards to use in the generated decks.
      */
     public Genetics(CardCatalog cardCatalog){
+        this(cardCatalog == null ? new CardCatalog() : cardCatalog, new Random());
+
+        masterSeed = rand.nextLong();
+        createInitialGeneration();
+    }
+
+    /**
+     * Creates a new Genetics object that is reproducible from a seed. The seed is used for the initial generation,
+     * breeding and mutation, and games are played with common random numbers (see setCommonRandomNumbers), so the
+     * same seed and parameters give the same run, whatever the thread count.
+     * Note that the card catalog's Random is reseeded.
+     * @param cardCatalog The cards to use in the generated decks.
+     * @param seed The master seed of the run.
+     */
+    public Genetics(CardCatalog cardCatalog, long seed){
+        this(cardCatalog == null ? new CardCatalog() : cardCatalog, new Random(seed));
+
+        masterSeed = seed;
+        commonRandomNumbers = true;
+        this.cardCatalog.rand.setSeed(rand.nextLong());
+        createInitialGeneration();
+    }
+
+    private void createInitialGeneration(){
+        while(generation.size() < generationSize){
+            generation.add(new RankedDeck(cardCatalog));
+        }
+
+
+        System.out.println("-- Initial Population Sample --");
+        System.out.println(generation.get(0).toString());
+    }
+
+    /**
+     * Creates a Genetics object with the default parameters and an empty generation.
+     */
+    private Genetics(CardCatalog cardCatalog, Random rand){
         generationCount = 1;
         cardSwapRate = DEFAULT_CARD_SWAP_RATE;
         mutationChance = DEFAULT_MUTATION_CHANCE;
         generationSize = DEFAULT_GENERATION_SIZE;
         deckRunCount = DEFAULT_DECK_RUN_COUNT;
-
-        if(cardCatalog == null){
-            cardCatalog = new CardCatalog();
-        }
+        threadCount = DEFAULT_THREAD_COUNT;
+        fitnessCache = new FitnessCache(DEFAULT_FITNESS_CACHE_SIZE);
+        adaptiveEvaluation = false;
+        roundRunCount = DEFAULT_ROUND_RUN_COUNT;
+        eliteFraction = DEFAULT_ELITE_FRACTION;
+        confidenceZ = DEFAULT_CONFIDENCE_Z;
+        curveScreen = false;
+        screenedRunCount = DEFAULT_SCREENED_RUN_COUNT;
+        commonRandomNumbers = false;
+        antithetic = false;
+        batchEvaluation = true;
+        steadyState = false;
+        offspringCount = DEFAULT_OFFSPRING_COUNT;
+        selection = new Selection.Skewed();
+        checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        objective = DEFAULT_OBJECTIVE;
+        objectiveParameter = 0;
 
         this.cardCatalog = cardCatalog;
         generation = new ArrayList<>();
-        rand = new Random();
+        this.rand = rand;
 
-        while(generation.size() < generationSize){
-            generation.add(new RankedDeck(cardCatalog));
-        }
+        SimulationMetrics.register();
+    }
 
+    /**
+     * Creates a Genetics object that continues a run from a checkpoint. The generation, its results, the generation
+     * count, the parameters and the random number generators, its own and the catalog's, are restored. The thread
+     * count, fitness cache, selection and checkpoint settings are not, and start at their defaults.
+     * The checkpointed generation has already been evaluated, so with a fitness cache its decks aren't played again.
+     * @param file The checkpoint, written by checkpoint or setCheckpoint.
+     * @param cardCatalog The card catalog of the run. It must contain every card in the checkpointed decks.
+     * @return The resumed Genetics object.
+     * @throws IOException If the checkpoint can't be read.
+     */
+    public static Genetics resume(Path file, CardCatalog cardCatalog) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+            if(in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION){
+                throw new IOException(file + " is not a checkpoint this version can read");
+            }
 
-        System.out.println("-- Initial Population Sample --");
-        System.out.println(generation.get(0).toString());
+            int generationCount = in.readInt();
+            float cardSwapRate = in.readFloat();
+            float mutationChance = in.readFloat();
+            int generationSize = in.readInt();
+            int deckRunCount = in.readInt();
+            boolean adaptiveEvaluation = in.readBoolean();
+            int roundRunCount = in.readInt();
+            float eliteFraction = in.readFloat();
+            double confidenceZ = in.readDouble();
+            boolean curveScreen = in.readBoolean();
+            int screenedRunCount = in.readInt();
+            boolean commonRandomNumbers = in.readBoolean();
+            boolean antithetic = in.readBoolean();
+            long masterSeed = in.readLong();
+            int objective = in.readUnsignedByte();
+            double objectiveParameter = in.readDouble();
+            boolean steadyState = in.readBoolean();
+            int offspringCount = in.readInt();
+
+            if(objective >= DeckStats.Objective.values().length){
+                throw new IOException(file + " has an unknown objective: " + objective);
+            }
+            // the counts the setters require to be at least 1
+            checkAtLeastOne(file, "round run count", roundRunCount);
+            checkAtLeastOne(file, "screened run count", screenedRunCount);
+            checkAtLeastOne(file, "offspring count", offspringCount);
+
+            Random random = readRandom(file, in);
+            Random catalogRandom = readRandom(file, in);
+
+            Genetics genetics = new Genetics(cardCatalog, random);
+            genetics.generationCount = generationCount;
+            genetics.cardSwapRate = cardSwapRate;
+            genetics.mutationChance = mutationChance;
+            genetics.generationSize = generationSize;
+            genetics.deckRunCount = deckRunCount;
+            genetics.adaptiveEvaluation = adaptiveEvaluation;
+            genetics.roundRunCount = roundRunCount;
+            genetics.eliteFraction = eliteFraction;
+            genetics.confidenceZ = confidenceZ;
+            genetics.curveScreen = curveScreen;
+            genetics.screenedRunCount = screenedRunCount;
+            genetics.commonRandomNumbers = commonRandomNumbers;
+            genetics.antithetic = antithetic;
+            genetics.masterSeed = masterSeed;
+            genetics.objective = DeckStats.Objective.values()[objective];
+            genetics.objectiveParameter = objectiveParameter;
+            genetics.steadyState = steadyState;
+            genetics.offspringCount = offspringCount;
+
+            int deckCount = in.readInt();
+            for(int i = 0; i < deckCount; i++){
+                genetics.generation.add(RankedDeck.read(in, cardCatalog));
+            }
+
+            // the catalog picks the cards of mutations and new decks, so it has to continue where it left off too
+            cardCatalog.rand = catalogRandom;
+
+            genetics.sortGeneration();
+            return genetics;
+        }
+    }
+
+    private static void checkAtLeastOne(Path file, String name, int value) throws IOException {
+        if(value < 1){
+            throw new IOException(file + " has an invalid " + name + ": " + value);
+        }
     }
 
     /**
@@ -80,36 +283,579 @@ public class Genetics {
 
     /**
      * Evaluates a generation for a specified run count for each deck and sorts it from best to worst.
+     * With a fitness cache, decks with the same cards as an earlier deck share its results, and only play the games
+     * needed to reach the run count. Without one, every deck plays the full run count.
+     * With adaptive evaluation, the same total number of games is played in rounds, and decks that can't make the
+     * elite stop playing early (see setAdaptiveEvaluation).
+     * With the curve screen, decks whose mana curve can't keep up with the last generation's elite only play a few
+     * games (see setCurveScreen).
      * @param runCount The number of times to run each deck.
      */
     public void evaluateGeneration(int runCount){
+        long start = System.nanoTime();
+        List<RankedDeck> decksToPlay = getDecksToPlay();
 
-        for(RankedDeck deck : generation){
-            deck.playGames(runCount);
+        if(curveScreen){
+            decksToPlay = playScreenedDecks(decksToPlay, runCount);
+        }
+
+        if(adaptiveEvaluation){
+            playAdaptively(decksToPlay, runCount);
+        }
+        else {
+            int[] gameCounts = new int[decksToPlay.size()];
+
+            for(int i = 0; i < gameCounts.length; i++){
+                gameCounts[i] = getGamesNeeded(decksToPlay.get(i), runCount);
+            }
+
+            playDecks(decksToPlay, gameCounts);
         }
 
         sortGeneration();
 
+        if(curveScreen){
+            calibrateCurveScreen(runCount);
+        }
+
+        SimulationMetrics.getInstance().recordEvaluation(
+                System.nanoTime() - start,
+                generation.get(0).getAverageWinTurn(),
+                generation.get(generation.size() / 2).getAverageWinTurn(),
+                fitnessCache
+        );
+    }
+
+    /**
+     * Plays the few games given to decks that fail the curve screen. A deck fails if its curve estimate, plus the
+     * smallest gap seen between an estimate and a deck's actual average, is still slower than the last elite.
+     * @param decks The decks to play.
+     * @param runCount The number of games a deck that passes will play.
+     * @return The decks that passed, which still need to be played.
+     */
+    private List<RankedDeck> playScreenedDecks(List<RankedDeck> decks, int runCount){
+        if(Double.isNaN(eliteWinTurn)){
+            return decks;
+        }
+
+        double gap = curveGap == Double.POSITIVE_INFINITY ? 0 : curveGap;
+        List<RankedDeck> passed = new ArrayList<>();
+        List<RankedDeck> screened = new ArrayList<>();
+
+        for(RankedDeck deck : decks){
+            if(ManaCurve.estimateWinTurn(deck) + gap > eliteWinTurn){
+                screened.add(deck);
+            }
+            else{
+                passed.add(deck);
+            }
+        }
+
+        int[] gameCounts = new int[screened.size()];
+        for(int i = 0; i < gameCounts.length; i++){
+            RankedDeck deck = screened.get(i);
+            gameCounts[i] = Math.max(0, Math.min(getGamesNeeded(deck, runCount), screenedRunCount - deck.getRunCount()));
+        }
+
+        playDecks(screened, gameCounts);
+        return passed;
     }
 
     /**
-     * Creates the next generation and replaces the current generation with the new one.
+     * Updates the elite win turn and the gap between curve estimates and actual averages from the sorted generation.
+     * Only decks that played the full run count are used for the gap, so the gap isn't thrown off by noisy results.
+     */
+    private void calibrateCurveScreen(int runCount){
+        int eliteCount = Math.max(1, Math.min(generation.size(), Math.round(generationSize * eliteFraction)));
+        eliteWinTurn = generation.get(eliteCount - 1).getAverageWinTurn();
+
+        for(RankedDeck deck : generation){
+            if(deck.getRunCount() >= runCount){
+                curveGap = Math.min(curveGap, deck.getAverageWinTurn() - ManaCurve.estimateWinTurn(deck));
+            }
+        }
+    }
+
+    /**
+     * @return The number of games a deck needs to play to be evaluated for a run count.
+     */
+    private int getGamesNeeded(RankedDeck deck, int runCount){
+        // in steady state, decks that survive a step keep their results, like decks in the fitness cache
+        return fitnessCache == null && !steadyState ? runCount : Math.max(0, runCount - deck.getRunCount());
+    }
+
+    /**
+     * Plays the games for a generation in rounds. After every round, the elite cut is the highest upper confidence
+     * bound among the best decks, and a deck whose lower bound is above the cut is very unlikely to make the elite,
+     * so it stops playing. Decks that are clearly in the elite stop at the run count. Half of the games saved by
+     * stopping decks early go to the decks that are still close, which may play up to twice the run count, and the
+     * other half aren't played at all.
+     * @param decks The decks to play.
+     * @param runCount The number of games each deck would play without adaptive evaluation.
+     */
+    private void playAdaptively(List<RankedDeck> decks, int runCount){
+        long budget = 0;
+
+        for(RankedDeck deck : decks){
+            budget += getGamesNeeded(deck, runCount);
+        }
+
+        int eliteCount = Math.max(1, Math.min(decks.size(), Math.round(generationSize * eliteFraction)));
+        int maxGamesPerDeck = runCount * MAX_ADAPTIVE_RUN_MULTIPLIER;
+        Map<RankedDeck, Integer> played = new IdentityHashMap<>();
+        List<RankedDeck> active = new ArrayList<>(decks);
+        Set<RankedDeck> eliminated = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        while(budget > 0 && !active.isEmpty()){
+            int roundGames = (int) Math.min(roundRunCount, Math.max(1, budget / active.size()));
+            int[] gameCounts = new int[active.size()];
+
+            for(int i = 0; i < gameCounts.length; i++){
+                int alreadyPlayed = played.getOrDefault(active.get(i), 0);
+                gameCounts[i] = Math.min(roundGames, maxGamesPerDeck - alreadyPlayed);
+                played.put(active.get(i), alreadyPlayed + gameCounts[i]);
+                budget -= gameCounts[i];
+            }
+
+            playDecks(active, gameCounts);
+
+            double[] upperBounds = new double[decks.size()];
+            double[] lowerBounds = new double[decks.size()];
+            for(int i = 0; i < upperBounds.length; i++){
+                upperBounds[i] = decks.get(i).getStats().getUpperBound(confidenceZ);
+                lowerBounds[i] = decks.get(i).getStats().getLowerBound(confidenceZ);
+            }
+            Arrays.sort(upperBounds);
+            Arrays.sort(lowerBounds);
+            double eliteCut = upperBounds[eliteCount - 1];
+            double outsideCut = eliteCount < lowerBounds.length ? lowerBounds[eliteCount] : Double.POSITIVE_INFINITY;
+
+            active.clear();
+            for(RankedDeck deck : decks){
+                DeckStats stats = deck.getStats();
+                // decks that are clearly in the elite only need the normal run count, close ones may play more
+                int maxGames = stats.getUpperBound(confidenceZ) < outsideCut ? runCount : maxGamesPerDeck;
+
+                if(stats.getLowerBound(confidenceZ) > eliteCut){
+                    // only half of the games a dropped deck saves go to the contenders, the rest are not played
+                    if(eliminated.add(deck)){
+                        budget -= Math.max(0, runCount - played.getOrDefault(deck, 0)) / 2;
+                    }
+                }
+                else if(played.getOrDefault(deck, 0) < maxGames){
+                    active.add(deck);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays games with several decks using the evaluation service's workers.
+     * @param decks The decks to play.
+     * @param gameCounts The number of games to play with each deck.
+     */
+    private void playDecks(List<RankedDeck> decks, int[] gameCounts){
+
+        // Decks are handed out one at a time so a slow deck doesn't leave the other workers idle. Every worker
+        // has its own Random, so the workers never contend on a shared generator. With common random numbers, every
+        // game is seeded from the generation's seed instead, so it doesn't matter which worker plays which deck.
+        EvaluationService service = getEvaluationService();
+        List<CompletableFuture<DeckStats>> results = new ArrayList<>(decks.size());
+        // in steady state, decks from different steps are ranked together, so they all play the same games
+        long generationSeed = steadyState ? masterSeed : PairedRandom.mix(masterSeed, generationCount);
+
+        try {
+            for(int d = 0; d < decks.size(); d++){
+                RankedDeck deck = decks.get(d);
+
+                if(gameCounts[d] == 0){
+                    continue;
+                }
+
+                if(commonRandomNumbers){
+                    results.add(service.submit(deck, gameCounts[d], EvaluationService.Priority.Normal, generationSeed,
+                            antithetic, batchEvaluation));
+                }
+                else{
+                    results.add(service.submit(
+                            deck, gameCounts[d], EvaluationService.Priority.Normal, batchEvaluation));
+                }
+            }
+
+            for(CompletableFuture<DeckStats> result : results){
+                result.get();
+            }
+        }
+        catch(InterruptedException e){
+            for(CompletableFuture<DeckStats> result : results){
+                result.cancel(false);
+            }
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating generation " + generationCount, e);
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("A worker failed while evaluating generation " + generationCount,
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Gets the decks in the generation that need to be played. Decks sharing results through the fitness cache are
+     * only listed once, so the same results aren't played on by two threads.
+     * @return The decks to play.
+     */
+    private List<RankedDeck> getDecksToPlay(){
+        if(fitnessCache == null){
+            return generation;
+        }
+
+        List<RankedDeck> decksToPlay = new ArrayList<>(generation.size());
+        Set<DeckStats> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for(RankedDeck deck : generation){
+            DeckStats stats = fitnessCache.getStats(deck);
+            deck.setStats(stats);
+
+            if(seen.add(stats)){
+                decksToPlay.add(deck);
+            }
+        }
+
+        return decksToPlay;
+    }
+
+    /**
+     * Gets the service used to evaluate generations, creating it if needed. Its worker threads are daemons, so an
+     * unfinished run won't keep the JVM alive, and close stops them. The workers are seeded from the master seed
+     * rather than from rand, so creating the service doesn't change breeding.
+     * @return The service.
+     */
+    private EvaluationService getEvaluationService(){
+        if(evaluationService == null){
+            evaluationService = new EvaluationService(
+                    Executors.newFixedThreadPool(threadCount, r -> {
+                        Thread thread = new Thread(r, "goldfish-worker");
+                        thread.setDaemon(true);
+                        return thread;
+                    }),
+                    // -1, since generation seeds mix in generation numbers from 0
+                    true, threadCount, 0, new Random(PairedRandom.mix(masterSeed, -1)));
+        }
+
+        return evaluationService;
+    }
+
+    /**
+     * Makes the generations be evaluated by another service, such as one shared with other work. Each deck is
+     * submitted with normal priority. The service isn't closed by this object.
+     * @param evaluationService The service, or null to go back to this object's own service.
+     */
+    public void setEvaluationService(EvaluationService evaluationService){
+        closeOwnEvaluationService();
+        this.evaluationService = evaluationService;
+        ownsEvaluationService = evaluationService == null;
+    }
+
+    /**
+     * Stops the threads this object created: the workers of its own evaluation service, and the checkpoint writer
+     * once the last checkpoint is written. A service set with setEvaluationService is left running. The object can
+     * still be used afterwards, and creates new threads when it needs them.
+     */
+    @Override
+    public void close(){
+        if(ownsEvaluationService){
+            closeOwnEvaluationService();
+        }
+        awaitCheckpoint();
+
+        if(checkpointWriter != null){
+            checkpointWriter.shutdown();
+            checkpointWriter = null;
+        }
+    }
+
+    private void closeOwnEvaluationService(){
+        if(evaluationService != null && ownsEvaluationService){
+            evaluationService.close();
+        }
+        evaluationService = null;
+    }
+
+    /**
+     * Writes a checkpoint of the current generation, its results, the generation count, the parameters and the
+     * random number generators, so the run can be continued later with resume. The generation should have been
+     * evaluated first.
+     * The checkpoint is written to a temporary file and moved into place, so an interrupted write leaves the
+     * previous checkpoint intact.
+     * @param file The file to write.
+     * @throws IOException If the checkpoint can't be written.
+     */
+    public void checkpoint(Path file) throws IOException {
+        writeAtomically(file, encodeCheckpoint());
+    }
+
+    /**
+     * Writes a checkpoint in the background if one is due this generation. Only encoding the generation happens on
+     * the calling thread, and it is small: a few bytes per distinct card in each deck.
+     */
+    private void checkpointIfDue(){
+        if(checkpointFile == null || generationCount % checkpointInterval != 0){
+            return;
+        }
+
+        final Path file = checkpointFile;
+        final int generationNumber = generationCount;
+        final byte[] bytes;
+
+        try {
+            bytes = encodeCheckpoint();
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+
+        if(checkpointWriter == null){
+            checkpointWriter = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "goldfish-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        lastCheckpoint = checkpointWriter.submit(() -> {
+            try {
+                writeAtomically(file, bytes);
+            }
+            catch(IOException e){
+                // the run goes on, and the previous checkpoint is still intact
+                System.out.println("-- Couldn't write the checkpoint for gen " + generationNumber + ": " + e + " --");
+            }
+        });
+    }
+
+    /**
+     * Waits for the last background checkpoint to be written.
+     */
+    private void awaitCheckpoint(){
+        if(lastCheckpoint == null){
+            return;
+        }
+
+        try {
+            lastCheckpoint.get();
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("Writing a checkpoint failed", e.getCause());
+        }
+    }
+
+    private byte[] encodeCheckpoint() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeInt(generationCount);
+            out.writeFloat(cardSwapRate);
+            out.writeFloat(mutationChance);
+            out.writeInt(generationSize);
+            out.writeInt(deckRunCount);
+            out.writeBoolean(adaptiveEvaluation);
+            out.writeInt(roundRunCount);
+            out.writeFloat(eliteFraction);
+            out.writeDouble(confidenceZ);
+            out.writeBoolean(curveScreen);
+            out.writeInt(screenedRunCount);
+            out.writeBoolean(commonRandomNumbers);
+            out.writeBoolean(antithetic);
+            out.writeLong(masterSeed);
+            out.writeByte(objective.ordinal());
+            out.writeDouble(objectiveParameter);
+            out.writeBoolean(steadyState);
+            out.writeInt(offspringCount);
+
+            writeRandom(out, rand);
+            writeRandom(out, cardCatalog.rand);
+
+            out.writeInt(generation.size());
+            for(RankedDeck deck : generation){
+                deck.write(out);
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Path temp = Paths.get(file.toString() + ".tmp");
+
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            // the bytes have to be on disk before the move, or a crash can leave an empty checkpoint behind
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Random is serializable, and its serialized form is the only way to save its exact state.
+     */
+    private static void writeRandom(DataOutputStream out, Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try(ObjectOutputStream objects = new ObjectOutputStream(bytes)){
+            objects.writeObject(random);
+        }
+
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Random readRandom(Path file, DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 1 || length > MAX_RANDOM_STATE_LENGTH){
+            throw new IOException(file + " has an invalid random number generator length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        try(ObjectInputStream objects = new RandomInputStream(new ByteArrayInputStream(bytes))){
+            Random random = (Random) objects.readObject();
+            if(random == null){
+                throw new IOException(file + " has no random number generator");
+            }
+            return random;
+        }
+        catch(ClassNotFoundException e){
+            throw new IOException(file + " has a random number generator that can't be read", e);
+        }
+    }
+
+    /**
+     * RandomInputStream reads a serialized java.util.Random and refuses every other class, so a crafted checkpoint
+     * can't make resume create any object but a Random.
+     */
+    private static class RandomInputStream extends ObjectInputStream {
+
+        RandomInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if(!desc.getName().equals(Random.class.getName())){
+                throw new InvalidClassException(desc.getName(), "only java.util.Random can be in a checkpoint");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("proxy", "only java.util.Random can be in a checkpoint");
+        }
+    }
+
+    /**
+     * Creates the next generation and replaces the current generation with the new one. In steady state, the worst
+     * decks are dropped instead, and a few offspring are added. evaluateGeneration leaves the generation best first,
+     * so it isn't sorted again here.
      */
     private void breedNewGeneration(){
-        sortGeneration();
+        if(steadyState){
+            breedOffspring();
+            return;
+        }
+
+        long start = System.nanoTime();
+        prepareSelection();
 
         List<RankedDeck> newGeneration = new ArrayList<>();
 
         while(newGeneration.size() < generationSize){
             newGeneration.addAll(
                     breed(
-                            generation.get(getSkewedInt(generation.size())),
-                            generation.get(getSkewedInt(generation.size()))
+                            generation.get(selection.select(rand)),
+                            generation.get(selection.select(rand))
                     )
             );
         }
 
         generation = newGeneration;
+        SimulationMetrics.getInstance().recordBreeding(System.nanoTime() - start);
+    }
+
+    /**
+     * Drops the worst decks of the evaluated generation until it is back to the generation size, then adds
+     * offspring bred from the decks that are left. The decks that are kept keep their results, so the next
+     * evaluation only plays the offspring.
+     */
+    private void breedOffspring(){
+        long start = System.nanoTime();
+
+        // the evaluated generation is best first, so the worst decks are at the end
+        while(generation.size() > generationSize){
+            generation.remove(generation.size() - 1);
+        }
+
+        prepareSelection();
+
+        List<RankedDeck> offspring = new ArrayList<>();
+
+        while(offspring.size() < offspringCount){
+            offspring.addAll(
+                    breed(
+                            generation.get(selection.select(rand)),
+                            generation.get(selection.select(rand))
+                    )
+            );
+        }
+
+        generation.addAll(offspring.subList(0, offspringCount));
+        SimulationMetrics.getInstance().recordBreeding(System.nanoTime() - start);
+    }
+
+    /**
+     * Replaces the current generation with a new one bred from it. The current generation should have been
+     * evaluated first.
+     */
+    public void nextGeneration(){
+        breedNewGeneration();
+        ++generationCount;
+    }
+
+    /**
+     * Gets the best decks of the current generation. The generation should have been evaluated first.
+     * @param count The number of decks to get.
+     * @return The best decks, best first.
+     */
+    public List<RankedDeck> getBestDecks(int count){
+        sortGeneration();
+        return new ArrayList<>(generation.subList(0, Math.min(count, generation.size())));
+    }
+
+    /**
+     * Replaces the worst decks of the current generation with decks from somewhere else, such as another
+     * population. The generation should have been evaluated first, and the new decks should have results.
+     * @param decks The decks to add. They must use this object's card catalog.
+     */
+    public void immigrate(List<RankedDeck> decks){
+        sortGeneration();
+
+        int replaced = Math.min(decks.size(), generation.size());
+        for(int i = 0; i < replaced; i++){
+            generation.set(generation.size() - 1 - i, decks.get(i));
+        }
+
+        sortGeneration();
     }
 
     /**
@@ -129,10 +875,12 @@ public class Genetics {
             System.out.println("-- Worst deck --");
             System.out.println(generation.get(generation.size() - 1).toString());
 
+            checkpointIfDue();
             breedNewGeneration();
             ++generationCount;
         }
 
+        awaitCheckpoint();
         return generation.get(0);
     }
 
@@ -152,10 +900,12 @@ public class Genetics {
             System.out.println("-- Best deck --");
             System.out.println(generation.get(0).toString());
 
+            checkpointIfDue();
             breedNewGeneration();
             ++generationCount;
         }
 
+        awaitCheckpoint();
         return generation.get(0);
     }
 
@@ -169,7 +919,8 @@ public class Genetics {
     }
 
     /**
-     * breed takes two RankedDeck objects and combines and mutates them into a new RankedDeck.
+     * breed takes two RankedDeck objects and combines and mutates them into a new RankedDeck. Both decks are
+     * taken in sorted order, and the children swap their cards after a random split position.
      * @param deck1 The first RankedDeck to breed.
      * @param deck2 The second RankedDeck to breed.
      * @return A new RankedDeck breed by genetic rules.
@@ -178,16 +929,11 @@ public class Genetics {
         List<RankedDeck> children = new ArrayList<>(2);
         int splitPos = rand.nextInt(Math.min(deck1.size(), deck2.size()));
 
-        deck1.sort();
-        deck2.sort();
-
         if(rand.nextFloat() < cardSwapRate) {
-            RankedDeck bredDeck1 = new RankedDeck(new ArrayList<>(deck1.subList(0, splitPos)));
-            bredDeck1.addAll(new ArrayList<>(deck2.subList(splitPos, deck2.size())));
+            RankedDeck bredDeck1 = deck1.splice(deck2, splitPos);
             mutate(bredDeck1);
 
-            RankedDeck bredDeck2 = new RankedDeck(new ArrayList<>(deck2.subList(0, splitPos)));
-            bredDeck2.addAll(new ArrayList<>(deck1.subList(splitPos, deck1.size())));
+            RankedDeck bredDeck2 = deck2.splice(deck1, splitPos);
             mutate(bredDeck2);
 
             children.add(bredDeck1);
@@ -209,7 +955,7 @@ public class Genetics {
     public RankedDeck mutate(RankedDeck deck){
         for(int i = 0; i < deck.size(); i++){
             if(rand.nextFloat() < mutationChance){
-                deck.replace(i, cardCatalog.getRandomCard());
+                deck.replace(i, cardCatalog.getRandomCardIndex());
             }
         }
 
@@ -217,10 +963,14 @@ public class Genetics {
     }
 
     /**
-     * Sorts the current generation by average win turn, descending.
+     * Sorts the current generation by the objective, best first. Decks with the same score are sorted by average
+     * win turn, since percentiles and win chances often tie.
      */
     private void sortGeneration(){
-        generation.sort((o1, o2) -> Double.compare(o1.getAverageWinTurn(), o2.getAverageWinTurn()));
+        generation.sort(
+                Comparator.comparingDouble((RankedDeck deck) -> deck.getStats().getScore(objective, objectiveParameter))
+                        .thenComparingDouble(RankedDeck::getAverageWinTurn)
+        );
     }
 
     /**
@@ -230,14 +980,24 @@ public class Genetics {
      * @return A random int from 0 to max - 1.
      */
     private int getSkewedInt(int max){
+        return Selection.Skewed.getSkewedInt(rand, max);
+    }
 
-        int ret = (int)(rand.nextGaussian() * max / 7.0);
+    /**
+     * Gives the selection the evaluated generation's results, which are read once here so selecting a parent
+     * doesn't read a deck's stats again.
+     */
+    private void prepareSelection(){
+        double[] scores = new double[generation.size()];
+        double[] averageWinTurns = new double[generation.size()];
 
-        if(ret < 0){
-            return (-ret - 1) % max;
+        for(int i = 0; i < generation.size(); i++){
+            RankedDeck deck = generation.get(i);
+            scores[i] = deck.getStats().getScore(objective, objectiveParameter);
+            averageWinTurns[i] = deck.getAverageWinTurn();
         }
 
-        return ret % max;
+        selection.prepare(scores, averageWinTurns);
     }
 
     /**
@@ -260,6 +1020,13 @@ public class Genetics {
         return generation;
     }
 
+    /**
+     * @return The cards used in the generated decks.
+     */
+    public CardCatalog getCardCatalog(){
+        return cardCatalog;
+    }
+
     /**
      * The cardSwapRate is the chance that two decks will swap their cards when bred.
      * @return The current cardSwapRate
@@ -324,6 +1091,375 @@ public class Genetics {
         this.deckRunCount = deckRunCount;
     }
 
+    /**
+     * The fitness cache remembers the results of decks, so a deck with the same cards as an earlier deck adds to
+     * its results instead of starting over.
+     * @return The current fitness cache, or null if there is none
+     */
+    public FitnessCache getFitnessCache() {
+        return fitnessCache;
+    }
+
+    /**
+     * The fitness cache remembers the results of decks, so a deck with the same cards as an earlier deck adds to
+     * its results instead of starting over.
+     * @param fitnessCache The new fitness cache, or null to evaluate every deck from zero
+     */
+    public void setFitnessCache(FitnessCache fitnessCache) {
+        this.fitnessCache = fitnessCache;
+    }
+
+    /**
+     * Adaptive evaluation plays the games for a generation in rounds, and stops playing decks whose confidence
+     * interval shows they can't make the elite. The games they would have played go to the close contenders instead.
+     * @return True if adaptive evaluation is used, otherwise false
+     */
+    public boolean isAdaptiveEvaluation() {
+        return adaptiveEvaluation;
+    }
+
+    /**
+     * Adaptive evaluation plays the games for a generation in rounds, and stops playing decks whose confidence
+     * interval shows they can't make the elite. The games they would have played go to the close contenders instead.
+     * @param adaptiveEvaluation True to use adaptive evaluation, false to play every deck for the full run count
+     */
+    public void setAdaptiveEvaluation(boolean adaptiveEvaluation) {
+        this.adaptiveEvaluation = adaptiveEvaluation;
+    }
+
+    /**
+     * The round run count is the number of games each deck plays per round of adaptive evaluation.
+     * @return The current round run count
+     */
+    public int getRoundRunCount() {
+        return roundRunCount;
+    }
+
+    /**
+     * The round run count is the number of games each deck plays per round of adaptive evaluation.
+     * @param roundRunCount The new round run count
+     */
+    public void setRoundRunCount(int roundRunCount) {
+        if(roundRunCount < 1){
+            throw new IllegalArgumentException("roundRunCount must be at least 1, was " + roundRunCount);
+        }
+
+        this.roundRunCount = roundRunCount;
+    }
+
+    /**
+     * The elite fraction is the fraction of a generation that adaptive evaluation tries to rank accurately.
+     * @return The current elite fraction
+     */
+    public float getEliteFraction() {
+        return eliteFraction;
+    }
+
+    /**
+     * The elite fraction is the fraction of a generation that adaptive evaluation tries to rank accurately.
+     * @param eliteFraction The new elite fraction
+     */
+    public void setEliteFraction(float eliteFraction) {
+        if(!(eliteFraction > 0 && eliteFraction <= 1)){
+            throw new IllegalArgumentException("eliteFraction must be above 0 and at most 1, was " + eliteFraction);
+        }
+
+        this.eliteFraction = eliteFraction;
+    }
+
+    /**
+     * The confidence z is the width, in standard errors, of the confidence intervals used by adaptive evaluation.
+     * @return The current confidence z
+     */
+    public double getConfidenceZ() {
+        return confidenceZ;
+    }
+
+    /**
+     * The confidence z is the width, in standard errors, of the confidence intervals used by adaptive evaluation.
+     * Wider intervals stop fewer decks early.
+     * @param confidenceZ The new confidence z
+     */
+    public void setConfidenceZ(double confidenceZ) {
+        this.confidenceZ = confidenceZ;
+    }
+
+    /**
+     * The curve screen estimates each deck's win turn from its land count and card costs before playing it (see
+     * ManaCurve). Decks that can't make the elite of the last generation only play the screened run count.
+     * @return True if the curve screen is used
+     */
+    public boolean isCurveScreen() {
+        return curveScreen;
+    }
+
+    /**
+     * The curve screen estimates each deck's win turn from its land count and card costs before playing it (see
+     * ManaCurve). Decks that can't make the elite of the last generation only play the screened run count, which
+     * saves most of the games spent on decks with far too many or too few lands. The estimate is optimistic, and is
+     * corrected by how far off it has been for decks that played the full run count.
+     * @param curveScreen True to use the curve screen
+     */
+    public void setCurveScreen(boolean curveScreen) {
+        this.curveScreen = curveScreen;
+    }
+
+    /**
+     * The screened run count is the number of games played by a deck that fails the curve screen.
+     * @return The current screened run count
+     */
+    public int getScreenedRunCount() {
+        return screenedRunCount;
+    }
+
+    /**
+     * The screened run count is the number of games played by a deck that fails the curve screen.
+     * @param screenedRunCount The new screened run count
+     */
+    public void setScreenedRunCount(int screenedRunCount) {
+        if(screenedRunCount < 1){
+            throw new IllegalArgumentException("screenedRunCount must be at least 1, was " + screenedRunCount);
+        }
+
+        this.screenedRunCount = screenedRunCount;
+    }
+
+    /**
+     * With common random numbers, the nth game of every deck in a generation gets the same shuffles and mulligans,
+     * seeded from the master seed and the generation count. Decks are compared on the same luck, so fewer games are
+     * needed to tell close decks apart, and the games are reproducible.
+     * @return True if common random numbers are used
+     */
+    public boolean isCommonRandomNumbers() {
+        return commonRandomNumbers;
+    }
+
+    /**
+     * With common random numbers, the nth game of every deck in a generation gets the same shuffles and mulligans,
+     * seeded from the master seed and the generation count. Decks are compared on the same luck, so fewer games are
+     * needed to tell close decks apart, and the games are reproducible.
+     * @param commonRandomNumbers True to use common random numbers
+     */
+    public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+        this.commonRandomNumbers = commonRandomNumbers;
+    }
+
+    /**
+     * With antithetic pairs, every second common random numbers game mirrors the shuffles of the game before it,
+     * which cancels out some of the luck in a deck's average. Only used with common random numbers.
+     * @return True if games are played in antithetic pairs
+     */
+    public boolean isAntithetic() {
+        return antithetic;
+    }
+
+    /**
+     * With antithetic pairs, every second common random numbers game mirrors the shuffles of the game before it,
+     * which cancels out some of the luck in a deck's average. Only used with common random numbers.
+     * @param antithetic True to play games in antithetic pairs
+     */
+    public void setAntithetic(boolean antithetic) {
+        this.antithetic = antithetic;
+    }
+
+    /**
+     * Batch evaluation plays each deck's games together, a turn at a time, with primitive arrays of game state (see
+     * BatchGame). It gives the same results as playing them one at a time with Game, faster.
+     * @return True if batch evaluation is used
+     */
+    public boolean isBatchEvaluation() {
+        return batchEvaluation;
+    }
+
+    /**
+     * Batch evaluation plays each deck's games together, a turn at a time, with primitive arrays of game state (see
+     * BatchGame). It gives the same results as playing them one at a time with Game, faster.
+     * @param batchEvaluation True to use batch evaluation
+     */
+    public void setBatchEvaluation(boolean batchEvaluation) {
+        this.batchEvaluation = batchEvaluation;
+    }
+
+    /**
+     * In steady state, each step breeds a few offspring instead of a new generation. After they are evaluated, the
+     * worst decks are dropped until the generation is back to its size, so an offspring only survives if it is
+     * better than a deck already there. Decks keep their results for as long as they survive, and only the
+     * offspring are played, so the games go to new decks, and the longer a deck survives the better its results
+     * are known. With common random numbers, every deck plays the same games, whatever step it was bred in.
+     * The generation count counts steps, and the generation holds the offspring too between breeding and the next
+     * evaluation.
+     * @return True if steady state is used
+     */
+    public boolean isSteadyState() {
+        return steadyState;
+    }
+
+    /**
+     * In steady state, each step breeds a few offspring instead of a new generation (see isSteadyState).
+     * @param steadyState True to use steady state
+     */
+    public void setSteadyState(boolean steadyState) {
+        this.steadyState = steadyState;
+    }
+
+    /**
+     * The offspring count is the number of offspring bred in each steady state step.
+     * @return The current offspring count
+     */
+    public int getOffspringCount() {
+        return offspringCount;
+    }
+
+    /**
+     * The offspring count is the number of offspring bred in each steady state step.
+     * @param offspringCount The new offspring count
+     */
+    public void setOffspringCount(int offspringCount) {
+        if(offspringCount < 1){
+            throw new IllegalArgumentException("offspringCount must be at least 1, was " + offspringCount);
+        }
+
+        this.offspringCount = offspringCount;
+    }
+
+    /**
+     * The selection chooses the parents of each new deck from the evaluated generation. The default is
+     * Selection.Skewed, which favors the best decks by their position in the generation.
+     * @return The current selection
+     */
+    public Selection getSelection() {
+        return selection;
+    }
+
+    /**
+     * The selection chooses the parents of each new deck from the evaluated generation (see Selection).
+     * @param selection The new selection
+     */
+    public void setSelection(Selection selection) {
+        if(selection == null){
+            throw new IllegalArgumentException("selection must not be null");
+        }
+
+        this.selection = selection;
+    }
+
+    /**
+     * @return The seed that common random numbers games' seeds come from.
+     */
+    public long getMasterSeed() {
+        return masterSeed;
+    }
+
+    /**
+     * The thread count is the number of worker threads used to play a generation's games.
+     * @return The current thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * The thread count is the number of worker threads used to play a generation's games. It doesn't apply to a
+     * service set with setEvaluationService. Workers share the decks' cards, which is safe because cards are
+     * immutable and everything that changes during a game is kept by the worker's own Game.
+     * @param threadCount The new thread count
+     */
+    public void setThreadCount(int threadCount) {
+        if(threadCount < 1){
+            throw new IllegalArgumentException("threadCount must be at least 1, was " + threadCount);
+        }
+
+        if(ownsEvaluationService){
+            closeOwnEvaluationService();
+        }
+
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * The objective is what decks are ranked by: their average win turn, a percentile of their win turns, or their
+     * chance of winning by a turn.
+     * @return The current objective
+     */
+    public DeckStats.Objective getObjective() {
+        return objective;
+    }
+
+    /**
+     * @return The percentile or turn of the current objective
+     */
+    public double getObjectiveParameter() {
+        return objectiveParameter;
+    }
+
+    /**
+     * Ranks decks by the average win turn, which is the default.
+     */
+    public void rankByMeanWinTurn() {
+        objective = DeckStats.Objective.MeanWinTurn;
+        objectiveParameter = 0;
+    }
+
+    /**
+     * Ranks decks by a percentile of their win turns, such as 90 to prefer decks that win by a turn in nine games out
+     * of ten. Adaptive evaluation and the curve screen still judge decks by their average win turn.
+     * @param percentile The percentile, from 0 to 100
+     */
+    public void rankByWinTurnPercentile(double percentile) {
+        if(!(percentile > 0 && percentile <= 100)){
+            throw new IllegalArgumentException("percentile must be above 0 and at most 100, was " + percentile);
+        }
+
+        objective = DeckStats.Objective.WinTurnPercentile;
+        objectiveParameter = percentile;
+    }
+
+    /**
+     * Ranks decks by their chance of winning by a turn, such as 4 to prefer decks that most often win by turn four.
+     * Adaptive evaluation and the curve screen still judge decks by their average win turn.
+     * @param turn The turn, from 1 to Game.MAX_TURN
+     */
+    public void rankByWinByTurn(int turn) {
+        if(turn < 1 || turn > Game.MAX_TURN){
+            throw new IllegalArgumentException("turn must be from 1 to " + Game.MAX_TURN + ", was " + turn);
+        }
+
+        objective = DeckStats.Objective.WinByTurn;
+        objectiveParameter = turn;
+    }
+
+    /**
+     * The checkpoint file is where runForGenerations and runForSeconds write checkpoints.
+     * @return The current checkpoint file, or null if checkpoints aren't written
+     */
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * The checkpoint interval is the number of generations between checkpoints.
+     * @return The current checkpoint interval
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Makes runForGenerations and runForSeconds write a checkpoint after evaluating every few generations, so the
+     * run can be continued with resume. Checkpoints are written on a background thread while the next generation
+     * is evaluated, and each replaces the last.
+     * @param checkpointFile The file to write checkpoints to, or null to stop writing checkpoints.
+     * @param checkpointInterval The number of generations between checkpoints.
+     */
+    public void setCheckpoint(Path checkpointFile, int checkpointInterval) {
+        if(checkpointInterval < 1){
+            throw new IllegalArgumentException("checkpointInterval must be at least 1, was " + checkpointInterval);
+        }
+
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
     /**
      * The generation count is the number of generations that have been generated. The initial, randomly generated
      * generation is generation one.
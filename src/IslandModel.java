@@ -0,0 +1,414 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * IslandModel runs several Genetics populations, or islands, side by side and regularly sends each island's best
+ * decks to the next island in a ring.
+ *
+ * A single population tends to converge early on whatever its first good decks were. Islands evolve separately,
+ * so they explore different decks, and migration spreads the good ones without letting one take over everywhere.
+ *
+ * Usage:
+ * The islands can run as threads in this JVM (runForGenerations), or as separate local JVMs with their own heaps
+ * (runInProcesses) that exchange decks through files in a shared directory. Everything runs on one host.
+ * Each island process can also be started by hand with main.
+ */
+public class IslandModel {
+
+    // The file in the migration directory that island processes read the card names from
+    private static final String CARD_FILE = "cards.txt";
+
+    // The number of generations between migrations
+    private final int DEFAULT_MIGRATION_INTERVAL = 5;
+    private int migrationInterval;
+    // The number of decks each island sends per migration
+    private final int DEFAULT_MIGRANT_COUNT = 4;
+    private int migrantCount;
+
+    private final CardCatalog cardCatalog;
+    private final int islandCount;
+
+    /**
+     * Creates an IslandModel with a specified card catalog.
+     * @param cardCatalog The cards to use in the generated decks.
+     * @param islandCount The number of islands.
+     */
+    public IslandModel(CardCatalog cardCatalog, int islandCount){
+        if(islandCount < 1){
+            throw new IllegalArgumentException("islandCount must be at least 1, was " + islandCount);
+        }
+
+        this.cardCatalog = cardCatalog;
+        this.islandCount = islandCount;
+        migrationInterval = DEFAULT_MIGRATION_INTERVAL;
+        migrantCount = DEFAULT_MIGRANT_COUNT;
+    }
+
+    /**
+     * Runs every island in its own thread in this JVM, exchanging decks in memory.
+     * @param generations The number of generations each island runs.
+     * @return The best deck across the final generations of all islands.
+     */
+    public RankedDeck runForGenerations(int generations){
+        Migration migration = new MemoryMigration(islandCount);
+        // the islands share the processors, and each evaluates its own generation
+        int threadsPerIsland = Math.max(1, Runtime.getRuntime().availableProcessors() / islandCount);
+
+        ExecutorService islands = Executors.newFixedThreadPool(islandCount);
+        List<Future<RankedDeck>> results = new ArrayList<>();
+
+        try {
+            for (int island = 0; island < islandCount; island++) {
+                final int id = island;
+
+                results.add(islands.submit(() -> {
+                    try(Genetics genetics = new Genetics(cardCatalog)){
+                        genetics.setThreadCount(threadsPerIsland);
+
+                        return evolve(genetics, id, migration, generations);
+                    }
+                }));
+            }
+
+            List<RankedDeck> best = new ArrayList<>();
+            for (Future<RankedDeck> result : results) {
+                best.add(result.get());
+            }
+
+            return getBest(best);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running islands", e);
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("An island failed", e.getCause());
+        }
+        finally {
+            islands.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs every island in its own JVM on this host, exchanging decks through files in a directory. The names of the
+     * catalog's cards are written to the directory for the islands to build the same catalog from, so they must all
+     * be cards in CardCatalog.allCards. Migrant files left in the directory by an earlier run are deleted first.
+     * @param generations The number of generations each island runs.
+     * @param directory The directory the islands exchange decks in.
+     * @return The best deck across the final generations of all islands.
+     * @throws IOException If an island can't be started or its results can't be read.
+     * @throws InterruptedException If interrupted while waiting for the islands.
+     */
+    public RankedDeck runInProcesses(int generations, Path directory) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        FileMigration.clear(directory);
+
+        Path cardFile = directory.resolve(CARD_FILE);
+        List<String> cardNames = new ArrayList<>();
+        for(int i = 0; i < cardCatalog.getCatalogSize(); i++){
+            cardNames.add(cardCatalog.getCardAt(i).name);
+        }
+        Files.write(cardFile, cardNames, StandardCharsets.UTF_8);
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+
+        for(int island = 0; island < islandCount; island++){
+            processes.add(new ProcessBuilder(java,
+                    "-cp", System.getProperty("java.class.path"),
+                    IslandModel.class.getName(),
+                    String.valueOf(island),
+                    String.valueOf(islandCount),
+                    directory.toString(),
+                    String.valueOf(generations),
+                    String.valueOf(migrationInterval),
+                    String.valueOf(migrantCount),
+                    cardFile.toString())
+                    .inheritIO()
+                    .start());
+        }
+
+        for(int island = 0; island < islandCount; island++){
+            int exitCode = processes.get(island).waitFor();
+
+            if(exitCode != 0){
+                throw new IOException("Island " + island + " exited with code " + exitCode);
+            }
+        }
+
+        // every island sends its final best decks before exiting
+        FileMigration migration = new FileMigration(directory, islandCount);
+        List<RankedDeck> best = new ArrayList<>();
+
+        for(int island = 0; island < islandCount; island++){
+            best.addAll(migration.read(island, cardCatalog));
+        }
+
+        return getBest(best);
+    }
+
+    /**
+     * Runs a single island for a number of generations, migrating every migrationInterval generations.
+     * @param genetics The island's population.
+     * @param island The island's number, from 0 to islandCount - 1.
+     * @param migration How decks are sent between islands.
+     * @param generations The number of generations to run.
+     * @return The best deck of the final generation.
+     */
+    private RankedDeck evolve(Genetics genetics, int island, Migration migration, int generations)
+            throws IOException {
+        for(int i = 1; i <= generations; i++){
+            genetics.evaluateGeneration();
+
+            if(i % migrationInterval == 0 || i == generations){
+                migration.send(island, genetics.getBestDecks(migrantCount));
+                genetics.immigrate(migration.receive(island, genetics.getCardCatalog()));
+
+                System.out.println("-- Island " + island + ", gen " + genetics.getGenerationCount()
+                        + ", best average win turn: " + genetics.getGeneration().get(0).getAverageWinTurn() + " --");
+            }
+
+            if(i < generations){
+                genetics.nextGeneration();
+            }
+        }
+
+        return genetics.getGeneration().get(0);
+    }
+
+    private static RankedDeck getBest(List<RankedDeck> decks){
+        return decks.stream()
+                .filter(d -> d.getRunCount() > 0)
+                .min(Comparator.comparingDouble(RankedDeck::getAverageWinTurn))
+                .orElse(null);
+    }
+
+    /**
+     * Runs one island of a multi-process island model. The card file has the name of a card on each line, and
+     * without it the island uses the full card catalog. Every island of a run must use the same cards.
+     *
+     * Arguments: island islandCount directory generations [migrationInterval] [migrantCount] [cardFile]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 4){
+            System.out.println("Usage: IslandModel island islandCount directory generations "
+                    + "[migrationInterval] [migrantCount] [cardFile]");
+            System.exit(1);
+        }
+
+        int island = Integer.parseInt(args[0]);
+        int islandCount = Integer.parseInt(args[1]);
+        Path directory = Paths.get(args[2]);
+        int generations = Integer.parseInt(args[3]);
+
+        CardCatalog catalog = new CardCatalog();
+        if(args.length > 6){
+            List<String> cardNames = Files.readAllLines(Paths.get(args[6]), StandardCharsets.UTF_8);
+            catalog = new CardCatalog(cardNames.toArray(new String[0]));
+        }
+
+        IslandModel model = new IslandModel(catalog, islandCount);
+        if(args.length > 4){
+            model.setMigrationInterval(Integer.parseInt(args[4]));
+        }
+        if(args.length > 5){
+            model.setMigrantCount(Integer.parseInt(args[5]));
+        }
+
+        RankedDeck best;
+        try(Genetics genetics = new Genetics(model.cardCatalog)){
+            best = model.evolve(genetics, island, new FileMigration(directory, islandCount), generations);
+        }
+
+        System.out.println("-- Island " + island + " best deck --");
+        System.out.println(best);
+    }
+
+    /**
+     * The migration interval is the number of generations between migrations.
+     * @return The current migration interval
+     */
+    public int getMigrationInterval() {
+        return migrationInterval;
+    }
+
+    /**
+     * The migration interval is the number of generations between migrations.
+     * @param migrationInterval The new migration interval
+     */
+    public void setMigrationInterval(int migrationInterval) {
+        this.migrationInterval = migrationInterval;
+    }
+
+    /**
+     * The migrant count is the number of decks each island sends to the next island per migration.
+     * @return The current migrant count
+     */
+    public int getMigrantCount() {
+        return migrantCount;
+    }
+
+    /**
+     * The migrant count is the number of decks each island sends to the next island per migration.
+     * @param migrantCount The new migrant count
+     */
+    public void setMigrantCount(int migrantCount) {
+        this.migrantCount = migrantCount;
+    }
+
+    /**
+     * Sends decks between islands. Islands form a ring: each island receives the decks sent by the one before it.
+     * Sending never waits for the receiver, and an island only receives decks it hasn't received before.
+     */
+    interface Migration {
+        void send(int island, List<RankedDeck> decks) throws IOException;
+
+        List<RankedDeck> receive(int island, CardCatalog catalog) throws IOException;
+    }
+
+    /**
+     * Writes decks, with their results, in the format shared by both kinds of migration.
+     */
+    private static byte[] encode(List<RankedDeck> decks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            out.writeInt(decks.size());
+            for(RankedDeck deck : decks){
+                deck.write(out);
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static List<RankedDeck> decode(byte[] bytes, CardCatalog catalog) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int count = in.readInt();
+        List<RankedDeck> decks = new ArrayList<>(count);
+
+        for(int i = 0; i < count; i++){
+            decks.add(RankedDeck.read(in, catalog));
+        }
+
+        return decks;
+    }
+
+    /**
+     * Migration between islands in the same JVM.
+     */
+    static class MemoryMigration implements Migration {
+        private final int islandCount;
+        private final AtomicReferenceArray<byte[]> sent;
+        private final byte[][] lastReceived;
+
+        MemoryMigration(int islandCount){
+            this.islandCount = islandCount;
+            sent = new AtomicReferenceArray<>(islandCount);
+            lastReceived = new byte[islandCount][];
+        }
+
+        @Override
+        public void send(int island, List<RankedDeck> decks) throws IOException {
+            // encoded, so the receiving island gets its own copies
+            sent.set(island, encode(decks));
+        }
+
+        @Override
+        public List<RankedDeck> receive(int island, CardCatalog catalog) throws IOException {
+            byte[] decks = sent.get((island + islandCount - 1) % islandCount);
+
+            // each island only touches its own slot of lastReceived
+            if(decks == null || decks == lastReceived[island]){
+                return Collections.emptyList();
+            }
+
+            lastReceived[island] = decks;
+            return decode(decks, catalog);
+        }
+    }
+
+    /**
+     * Migration between islands in different JVMs on the same host, through a file per island in a shared
+     * directory. Files are written to a temporary file and moved into place, so a reader never sees a partial file.
+     * Each file starts with the number of times its island has sent decks, so a receiver can tell new decks from
+     * ones it has already received.
+     */
+    static class FileMigration implements Migration {
+        private final Path directory;
+        private final int islandCount;
+        private final Map<Integer, Long> lastReceived = new HashMap<>();
+        private long sendCount;
+
+        FileMigration(Path directory, int islandCount) throws IOException {
+            this.directory = directory;
+            this.islandCount = islandCount;
+            Files.createDirectories(directory);
+        }
+
+        /**
+         * Deletes the migrant files in a directory, so islands don't receive decks from an earlier run.
+         */
+        static void clear(Path directory) throws IOException {
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "island-*.migrants*")){
+                for(Path file : files){
+                    Files.delete(file);
+                }
+            }
+        }
+
+        private Path getFile(int island){
+            return directory.resolve("island-" + island + ".migrants");
+        }
+
+        @Override
+        public void send(int island, List<RankedDeck> decks) throws IOException {
+            Path temp = directory.resolve("island-" + island + ".migrants.tmp");
+
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))){
+                out.writeLong(++sendCount);
+                out.write(encode(decks));
+            }
+
+            Files.move(temp, getFile(island), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public List<RankedDeck> receive(int island, CardCatalog catalog) throws IOException {
+            int from = (island + islandCount - 1) % islandCount;
+            Path file = getFile(from);
+
+            if(!Files.exists(file)){
+                return Collections.emptyList();
+            }
+
+            byte[] bytes = Files.readAllBytes(file);
+            long sequence = new DataInputStream(new ByteArrayInputStream(bytes)).readLong();
+
+            if(lastReceived.containsKey(from) && lastReceived.get(from) == sequence){
+                return Collections.emptyList();
+            }
+
+            lastReceived.put(from, sequence);
+            return decode(Arrays.copyOfRange(bytes, Long.BYTES, bytes.length), catalog);
+        }
+
+        /**
+         * Reads the decks an island last sent.
+         */
+        List<RankedDeck> read(int island, CardCatalog catalog) throws IOException {
+            Path file = getFile(island);
+
+            if(!Files.exists(file)){
+                return Collections.emptyList();
+            }
+
+            byte[] bytes = Files.readAllBytes(file);
+            return decode(Arrays.copyOfRange(bytes, Long.BYTES, bytes.length), catalog);
+        }
+    }
+}
@@ -1,32 +1,376 @@
-import com.google.gson.Gson;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-// todo - switch to json import of cards
-
-/*
+/**
+ * JsonCard imports cards from MTG JSON card data, such as AllCards.json.
+ *
+ * The JSON is streamed with Gson's JsonReader one card at a time, so the whole file is never held in memory. Only
+ * cards the game can play are kept: lands whose only abilities tap for one mana, creatures whose only ability is
+ * haste, and instants and sorceries that just deal damage. As elsewhere in the program, every land produces one
+ * mana of any color.
+ *
+ * Parsing the full card data takes a while, so the first load writes the imported cards to a small binary snapshot
+ * next to the JSON file. Later loads memory-map the snapshot instead, as long as the JSON file hasn't changed.
+ *
+ * Usage:
+ * new CardCatalog(JsonCard.load(Paths.get("JSON/AllCards.json")))
+ */
 public class JsonCard {
 
-    private static Gson gson;
-    private static JsonReader jsonReader;
+    // "GFCS", the first bytes of a snapshot file
+    private static final int SNAPSHOT_MAGIC = 0x47464353;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
 
-    static {
-        try {
-            jsonReader = new JsonReader(new FileReader("/JSON/AllCards.json"));
+    private static final Pattern REMINDER_TEXT = Pattern.compile("\\([^)]*\\)");
+    private static final Pattern DAMAGE_SPELL = Pattern.compile(
+            "(.+) deals (\\d+) damage to (any target|target creature or player|target player or planeswalker"
+                    + "|target player|target opponent|each opponent|each player)\\.");
+    // a land ability that taps for one mana, like a basic land's, which is all the game knows lands can do
+    private static final Pattern MANA_ABILITY = Pattern.compile(
+            "\\{T\\}: Add (\\{[WUBRGC]\\}((, \\{[WUBRGC]\\})*,? or \\{[WUBRGC]\\})?|one mana of any color)\\.");
+
+    private JsonCard(){
+    }
+
+    /**
+     * Loads the playable cards from a JSON file, using the snapshot next to it if it is up to date, and writing
+     * the snapshot if it isn't.
+     * @param json The JSON card data.
+     * @return The playable cards.
+     * @throws IOException If the JSON file can't be read.
+     */
+    public static List<Card> load(Path json) throws IOException {
+        return load(json, Paths.get(json.toString() + SNAPSHOT_EXTENSION));
+    }
+
+    /**
+     * Loads the playable cards from a JSON file, using a snapshot if it is up to date, and writing the snapshot
+     * if it isn't.
+     * @param json The JSON card data.
+     * @param snapshot The snapshot of the cards imported from the JSON.
+     * @return The playable cards.
+     * @throws IOException If the JSON file can't be read.
+     */
+    public static List<Card> load(Path json, Path snapshot) throws IOException {
+        long jsonSize = Files.size(json);
+        long jsonModified = Files.getLastModifiedTime(json).toMillis();
+
+        if(Files.exists(snapshot)){
+            try {
+                List<Card> cards = readSnapshot(snapshot, jsonSize, jsonModified);
+
+                if(cards != null){
+                    return cards;
+                }
+            }
+            catch(IOException | RuntimeException e){
+                // a damaged snapshot is rebuilt below
+                Game.debug("Ignoring unreadable card snapshot " + snapshot + ": " + e);
+            }
         }
-        catch(FileNotFoundException e){
-            e.printStackTrace();
+
+        List<Card> cards;
+        try(Reader reader = Files.newBufferedReader(json, StandardCharsets.UTF_8)){
+            cards = parse(reader);
         }
 
         try {
-            jsonReader.beginObject();
+            writeSnapshot(cards, snapshot, jsonSize, jsonModified);
         }
         catch(IOException e){
-            e.printStackTrace();
+            // the cards are still usable, the next load will just parse the JSON again
+            Game.debug("Couldn't write card snapshot " + snapshot + ": " + e);
+        }
+
+        return cards;
+    }
+
+    /**
+     * Streams JSON card data and keeps the cards the game can play. Accepts an object of cards keyed by name
+     * (AllCards.json) or an array of cards. The cards may also be under a "data" key, with each name holding an
+     * array of card faces (AtomicCards.json).
+     * @param reader The JSON card data.
+     * @return The playable cards.
+     * @throws IOException If the JSON can't be read or isn't card data.
+     */
+    public static List<Card> parse(Reader reader) throws IOException {
+        List<Card> cards = new ArrayList<>();
+        JsonReader json = new JsonReader(reader);
+
+        readCards(json, cards, true);
+
+        return cards;
+    }
+
+    private static void readCards(JsonReader json, List<Card> cards, boolean topLevel) throws IOException {
+        if(json.peek() == JsonToken.BEGIN_ARRAY){
+            json.beginArray();
+            while(json.hasNext()){
+                readCards(json, cards, false);
+            }
+            json.endArray();
+            return;
+        }
+
+        if(json.peek() != JsonToken.BEGIN_OBJECT){
+            json.skipValue();
+            return;
+        }
+
+        if(!topLevel){
+            Card card = readCard(json);
+
+            if(card != null){
+                cards.add(card);
+            }
+            return;
+        }
+
+        json.beginObject();
+        while(json.hasNext()){
+            String name = json.nextName();
+
+            if(name.equals("meta")){
+                json.skipValue();
+            }
+            else{
+                // "data" holds the cards in AtomicCards.json, otherwise every key is a card name
+                readCards(json, cards, name.equals("data"));
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Reads a single card object.
+     * @return The card, or null if the game can't play it.
+     */
+    private static Card readCard(JsonReader json) throws IOException {
+        String name = null;
+        String text = "";
+        String power = null;
+        String toughness = null;
+        double cost = 0;
+        List<String> types = new ArrayList<>();
+
+        json.beginObject();
+        while(json.hasNext()){
+            switch(json.nextName()){
+                case "name":
+                    name = nextString(json);
+                    break;
+                case "text":
+                    text = nextString(json);
+                    break;
+                case "power":
+                    power = nextString(json);
+                    break;
+                case "toughness":
+                    toughness = nextString(json);
+                    break;
+                case "cmc":
+                case "convertedManaCost":
+                case "manaValue":
+                    cost = json.nextDouble();
+                    break;
+                case "types":
+                    json.beginArray();
+                    while(json.hasNext()){
+                        types.add(json.nextString());
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if(name == null){
+            return null;
+        }
+
+        return toCard(name, (int) cost, types, text, power, toughness);
+    }
+
+    private static String nextString(JsonReader json) throws IOException {
+        if(json.peek() == JsonToken.NULL){
+            json.nextNull();
+            return null;
+        }
+
+        return json.nextString();
+    }
+
+    /**
+     * Converts card data to a Card, if the game can play it.
+     * @return The card, or null if the game can't play it.
+     */
+    static Card toCard(String name, int cost, List<String> types, String text, String power, String toughness){
+        String rules = text == null ? "" : REMINDER_TEXT.matcher(text).replaceAll("").trim();
+
+        if(types.size() == 1 && types.contains("Land")){
+            // lands that enter tapped, hurt, or do anything else would be played as if they didn't
+            for(String ability : rules.split("\n")){
+                if(!ability.trim().isEmpty() && !MANA_ABILITY.matcher(ability.trim()).matches()){
+                    return null;
+                }
+            }
+
+            return new Land(name, 1);
         }
+
+        if(types.size() == 1 && types.contains("Creature")){
+            Integer attack = parseStat(power);
+            Integer defense = parseStat(toughness);
+
+            if(attack == null || defense == null){
+                return null;
+            }
+            if(rules.isEmpty()){
+                return new Creature(name, cost, attack, defense);
+            }
+            if(rules.equalsIgnoreCase("Haste")){
+                return new Creature(name, cost, attack, defense, Creature.Ability.Haste);
+            }
+
+            return null;
+        }
+
+        if(types.size() == 1 && (types.contains("Instant") || types.contains("Sorcery"))){
+            Matcher matcher = DAMAGE_SPELL.matcher(rules);
+
+            if(matcher.matches() && (matcher.group(1).equals(name) || matcher.group(1).equals("~"))){
+                return new Spell(name, cost, Integer.parseInt(matcher.group(2)));
+            }
+        }
+
+        return null;
+    }
+
+    private static Integer parseStat(String stat){
+        try {
+            return stat == null ? null : Integer.parseInt(stat);
+        }
+        catch(NumberFormatException e){
+            // stats like "*" or "1+*" depend on the game state
+            return null;
+        }
+    }
+
+    /**
+     * Writes cards to a snapshot. The snapshot is written to a temporary file and moved into place, so a reader
+     * never sees a partly written snapshot.
+     * @param cards The cards to write.
+     * @param snapshot The snapshot file.
+     * @param jsonSize The size of the JSON file the cards came from.
+     * @param jsonModified The last modified time of the JSON file the cards came from.
+     * @throws IOException If the snapshot can't be written.
+     */
+    static void writeSnapshot(List<Card> cards, Path snapshot, long jsonSize, long jsonModified) throws IOException {
+        Path temp = Paths.get(snapshot.toString() + ".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))){
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(jsonSize);
+            out.writeLong(jsonModified);
+            out.writeInt(cards.size());
+
+            for(Card card : cards){
+                byte[] name = card.name.getBytes(StandardCharsets.UTF_8);
+
+                out.writeByte(card.type.ordinal());
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeShort(card.cost);
+
+                switch(card.type){
+                    case Creature:
+                        Creature creature = (Creature) card;
+                        out.writeShort(creature.attack);
+                        out.writeShort(creature.defense);
+                        out.writeBoolean(creature.hasAbility(Creature.Ability.Haste));
+                        break;
+                    case Spell:
+                        out.writeShort(((Spell) card).damage);
+                        break;
+                    case Land:
+                        out.writeShort(((Land) card).mana);
+                        break;
+                }
+            }
+        }
+
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads cards from a memory-mapped snapshot.
+     * @param snapshot The snapshot file.
+     * @param jsonSize The size of the JSON file the snapshot should have come from.
+     * @param jsonModified The last modified time of the JSON file the snapshot should have come from.
+     * @return The cards, or null if the snapshot is out of date.
+     * @throws IOException If the snapshot can't be read.
+     */
+    static List<Card> readSnapshot(Path snapshot, long jsonSize, long jsonModified) throws IOException {
+        try(FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION
+                    || buffer.getLong() != jsonSize || buffer.getLong() != jsonModified){
+                return null;
+            }
+
+            int count = buffer.getInt();
+            List<Card> cards = new ArrayList<>(count);
+            Card.CardType[] types = Card.CardType.values();
+
+            for(int i = 0; i < count; i++){
+                Card.CardType type = types[buffer.get()];
+                String name = readName(buffer);
+                int cost = buffer.getShort();
+
+                switch(type){
+                    case Creature:
+                        int attack = buffer.getShort();
+                        int defense = buffer.getShort();
+
+                        if(buffer.get() != 0){
+                            cards.add(new Creature(name, cost, attack, defense, Creature.Ability.Haste));
+                        }
+                        else{
+                            cards.add(new Creature(name, cost, attack, defense));
+                        }
+                        break;
+                    case Spell:
+                        cards.add(new Spell(name, cost, buffer.getShort()));
+                        break;
+                    case Land:
+                        cards.add(new Land(name, buffer.getShort()));
+                        break;
+                }
+            }
+
+            return cards;
+        }
+    }
+
+    private static String readName(ByteBuffer buffer){
+        byte[] name = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
     }
 }
-*/
\ No newline at end of file
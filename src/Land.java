@@ -1,15 +1,9 @@
 public class Land extends Card {
-	int mana;
+	final int mana;
 
 	public Land(String name, int mana){
-        super(CardType.Land);
+        super(CardType.Land, name, 0);
 
-		this.name = name;
 		this.mana = mana;
-		this.tapped = false;
 	}
-
-	public Land copy(){
-		return new Land(name, mana);
-	}
-}
\ No newline at end of file
+}
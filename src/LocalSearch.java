@@ -0,0 +1,571 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * LocalSearch refines a good deck, such as the best deck of a Genetics run, one card at a time.
+ *
+ * The genetic algorithm finds a good area quickly, but breeding swaps whole tails of decks and mutation swaps random
+ * cards, so it drifts for many generations once its decks are close to the best. A neighbor of a deck is the deck
+ * with one card swapped for another card of the catalog, and near the best deck, the neighbors are where the
+ * improvements are.
+ *
+ * Neighbors are compared with the deck by a paired test: each game is played with the same seed by the deck and
+ * the neighbor (see PairedRandom), so most of the luck cancels out of the difference between their win turns, and
+ * far fewer games tell them apart than if they were played separately. Each neighbor plays rounds of games until
+ * it is better or worse with confidence, or has played the most games it can (see setMaxRunCount). The rounds of
+ * every neighbor are played in parallel by an EvaluationService, which can be shared with other work (see
+ * setEvaluationService).
+ *
+ * There are two strategies:
+ *   HillClimbing compares every neighbor each step and moves to the one that is better by the most, stopping when
+ *   no neighbor is better with confidence.
+ *   SimulatedAnnealing compares a few random neighbors each step (see setCandidateCount) and moves to one if it is
+ *   better, or, while the temperature is high, if it is only a little worse. The temperature cools every step, and
+ *   the best deck seen is kept.
+ * Every step plays new games, so a deck doesn't win by being lucky on the same games over and over.
+ *
+ * Usage:
+ * RankedDeck refined = new LocalSearch(catalog).refine(genetics.getBestDecks(1).get(0), 60);
+ */
+public class LocalSearch {
+
+    /**
+     * The ways the search can move between decks.
+     */
+    public enum Strategy {
+        HillClimbing,
+        SimulatedAnnealing
+    }
+
+    // The games a neighbor plays in the first round of a comparison. Each later round doubles its games.
+    private static final int DEFAULT_ROUND_RUN_COUNT = 100;
+    // The most games a neighbor plays in a comparison
+    private static final int DEFAULT_MAX_RUN_COUNT = 5000;
+    private static final double DEFAULT_CONFIDENCE_Z = 2.5;
+    // The number of turns worse a neighbor can be and still have a 1 in e chance of being moved to, at first
+    private static final double DEFAULT_TEMPERATURE = 0.1;
+    // The temperature is multiplied by this every step
+    private static final double DEFAULT_COOLING = 0.95;
+    // The random neighbors simulated annealing compares each step
+    private static final int DEFAULT_CANDIDATE_COUNT = 8;
+
+    private final CardCatalog cardCatalog;
+
+    private Strategy strategy;
+    private int roundRunCount;
+    private int maxRunCount;
+    private double confidenceZ;
+    private double temperature;
+    private double cooling;
+    private int candidateCount;
+    private int threadCount;
+    private Consumer<String> progress;
+    private EvaluationService evaluationService;
+    private final Random rand;
+
+    /**
+     * Creates a LocalSearch that hill climbs.
+     * @param cardCatalog The cards that can be swapped in, the catalog of the decks refined.
+     */
+    public LocalSearch(CardCatalog cardCatalog){
+        this(cardCatalog, new Random());
+    }
+
+    /**
+     * Creates a LocalSearch that is reproducible from a seed, with the same thread count.
+     * @param cardCatalog The cards that can be swapped in, the catalog of the decks refined.
+     * @param seed The seed of the games and of simulated annealing's choices.
+     */
+    public LocalSearch(CardCatalog cardCatalog, long seed){
+        this(cardCatalog, new Random(seed));
+    }
+
+    private LocalSearch(CardCatalog cardCatalog, Random rand){
+        this.cardCatalog = cardCatalog;
+        this.rand = rand;
+
+        strategy = Strategy.HillClimbing;
+        roundRunCount = DEFAULT_ROUND_RUN_COUNT;
+        maxRunCount = DEFAULT_MAX_RUN_COUNT;
+        confidenceZ = DEFAULT_CONFIDENCE_Z;
+        temperature = DEFAULT_TEMPERATURE;
+        cooling = DEFAULT_COOLING;
+        candidateCount = DEFAULT_CANDIDATE_COUNT;
+        threadCount = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Refines a deck until hill climbing finds no better neighbor, or time runs out.
+     * @param deck The deck to refine. It isn't changed.
+     * @param seconds The most seconds to refine for. The step running when time runs out is finished.
+     * @return The best deck found, which is the deck itself if no neighbor was better. Its results are the games it
+     *     played in the search.
+     * @throws InterruptedException If the thread is interrupted while refining.
+     */
+    public RankedDeck refine(RankedDeck deck, int seconds) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        RankedDeck current = new RankedDeck(cardCatalog, getCounts(deck));
+        RankedDeck best = current;
+        // how many turns slower than the starting deck the current and best decks are, by the paired tests
+        double currentDifference = 0;
+        double bestDifference = 0;
+        double stepTemperature = temperature;
+
+        // without a service of its own, the search plays on one it creates for this refinement
+        EvaluationService service = evaluationService != null ? evaluationService : new EvaluationService(threadCount);
+
+        try{
+            for(int step = 1; System.nanoTime() - end < 0; step++){
+                Baseline baseline = new Baseline(current, rand.nextLong());
+                List<RankedDeck> neighbors = getNeighbors(current);
+
+                if(strategy == Strategy.SimulatedAnnealing){
+                    Collections.shuffle(neighbors, rand);
+                    neighbors = neighbors.subList(0, Math.min(candidateCount, neighbors.size()));
+                }
+
+                List<Comparison> comparisons = compare(neighbors, baseline, service);
+
+                Comparison move = strategy == Strategy.HillClimbing
+                        ? chooseClimb(comparisons)
+                        : chooseAnnealing(comparisons, stepTemperature);
+
+                if(move == null){
+                    if(strategy == Strategy.HillClimbing){
+                        report("Refine step " + step + ": no better neighbor");
+                        break;
+                    }
+                }
+                else{
+                    current = move.deck;
+                    currentDifference += move.getDifference();
+
+                    report("Refine step " + step + ": " + describe(baseline.deck, current) + ", "
+                            + String.format("%+.3f", move.getDifference()) + " turns");
+
+                    if(currentDifference < bestDifference){
+                        best = current;
+                        bestDifference = currentDifference;
+                    }
+                }
+
+                stepTemperature *= cooling;
+            }
+        }
+        finally{
+            if(service != evaluationService){
+                service.close();
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return The neighbor better with confidence by the most, or null if none is.
+     */
+    private Comparison chooseClimb(List<Comparison> comparisons){
+        Comparison move = null;
+
+        for(Comparison comparison : comparisons){
+            if(comparison.getUpperBound(confidenceZ) < 0
+                    && (move == null || comparison.getDifference() < move.getDifference())){
+                move = comparison;
+            }
+        }
+
+        return move;
+    }
+
+    /**
+     * @return The first neighbor accepted by the Metropolis rule, or null if none is.
+     */
+    private Comparison chooseAnnealing(List<Comparison> comparisons, double stepTemperature){
+        for(Comparison comparison : comparisons){
+            double difference = comparison.getDifference();
+
+            if(difference < 0 || rand.nextDouble() < Math.exp(-difference / stepTemperature)){
+                return comparison;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets every deck with one card of a deck swapped for a different card of the catalog.
+     */
+    private List<RankedDeck> getNeighbors(RankedDeck deck){
+        List<RankedDeck> neighbors = new ArrayList<>();
+        int size = cardCatalog.getCatalogSize();
+
+        for(int out = 0; out < size; out++){
+            if(deck.getCount(out) == 0){
+                continue;
+            }
+
+            for(int in = 0; in < size; in++){
+                if(in != out){
+                    int[] counts = getCounts(deck);
+                    counts[out]--;
+                    counts[in]++;
+                    neighbors.add(new RankedDeck(cardCatalog, counts));
+                }
+            }
+        }
+
+        return neighbors;
+    }
+
+    private int[] getCounts(RankedDeck deck){
+        int[] counts = new int[cardCatalog.getCatalogSize()];
+
+        for(int i = 0; i < counts.length; i++){
+            counts[i] = deck.getCount(i);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Plays neighbors against the baseline's games until each is better or worse with confidence, or has played the
+     * most games it can. The neighbors still undecided after a round all play the next round, so every round is the
+     * same games for all of them, and the baseline plays each round once, alongside them.
+     */
+    private List<Comparison> compare(List<RankedDeck> neighbors, Baseline baseline, EvaluationService service)
+            throws InterruptedException {
+        List<Comparison> comparisons = new ArrayList<>();
+        for(RankedDeck neighbor : neighbors){
+            comparisons.add(new Comparison(neighbor));
+        }
+
+        List<Comparison> undecided = comparisons;
+
+        for(int from = 0; from < maxRunCount && !undecided.isEmpty(); ){
+            int to = Math.min(maxRunCount, from + Math.max(roundRunCount, from));
+
+            List<CompletableFuture<DeckStats>> round = new ArrayList<>();
+            round.add(baseline.play(from, to, baseline.seed, service));
+            for(Comparison comparison : undecided){
+                round.add(comparison.play(from, to, baseline.seed, service));
+            }
+            await(round);
+
+            List<Comparison> stillUndecided = new ArrayList<>();
+            for(Comparison comparison : undecided){
+                for(int i = from; i < to; i++){
+                    comparison.add(comparison.turns[i] - baseline.turns[i]);
+                }
+
+                if(comparison.getUpperBound(confidenceZ) >= 0 && comparison.getLowerBound(confidenceZ) <= 0){
+                    stillUndecided.add(comparison);
+                }
+            }
+
+            undecided = stillUndecided;
+            from = to;
+        }
+
+        return comparisons;
+    }
+
+    private void await(List<CompletableFuture<DeckStats>> round) throws InterruptedException {
+        try{
+            for(CompletableFuture<DeckStats> result : round){
+                result.get();
+            }
+        }
+        catch(InterruptedException e){
+            for(CompletableFuture<DeckStats> result : round){
+                result.cancel(false);
+            }
+
+            throw e;
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("A worker failed while refining", e.getCause());
+        }
+    }
+
+    private void report(String message){
+        if(progress != null){
+            progress.accept(message);
+        }
+    }
+
+    private String describe(RankedDeck from, RankedDeck to){
+        String out = null;
+        String in = null;
+
+        for(int i = 0; i < cardCatalog.getCatalogSize(); i++){
+            if(to.getCount(i) < from.getCount(i)){
+                out = cardCatalog.getCardAt(i).name;
+            }
+            else if(to.getCount(i) > from.getCount(i)){
+                in = cardCatalog.getCardAt(i).name;
+            }
+        }
+
+        return out + " -> " + in;
+    }
+
+    /**
+     * A deck and the win turns of the games it has played in one step, by game number. Games are numbered from 0
+     * in every step, and each number is given its seed by the step's seed, so the nth game of every deck in a step
+     * is the same game.
+     */
+    private static class Played {
+        final RankedDeck deck;
+        int[] turns = new int[0];
+
+        Played(RankedDeck deck){
+            this.deck = deck;
+        }
+
+        /**
+         * Submits the deck's games from one number up to another.
+         */
+        CompletableFuture<DeckStats> play(int from, int to, long seed, EvaluationService service)
+                throws InterruptedException {
+            turns = Arrays.copyOf(turns, to);
+            return service.submit(deck, from, to - from, EvaluationService.Priority.Normal, seed, false, turns);
+        }
+    }
+
+    /**
+     * The deck the neighbors are compared with in one step, and the seed of the step's games.
+     */
+    private static class Baseline extends Played {
+        final long seed;
+
+        Baseline(RankedDeck deck, long seed){
+            super(deck);
+            this.seed = seed;
+        }
+    }
+
+    /**
+     * The paired differences between a neighbor's win turns and the baseline's, game by game.
+     */
+    private static class Comparison extends Played {
+        int games;
+        long sum;
+        long squareSum;
+
+        Comparison(RankedDeck neighbor){
+            super(neighbor);
+        }
+
+        void add(int difference){
+            games++;
+            sum += difference;
+            squareSum += (long) difference * difference;
+        }
+
+        /**
+         * @return The average number of turns the neighbor is slower than the baseline, so negative is better.
+         */
+        double getDifference(){
+            return games == 0 ? 0 : (double) sum / games;
+        }
+
+        double getStandardError(){
+            if(games < 2){
+                return Double.POSITIVE_INFINITY;
+            }
+
+            double mean = getDifference();
+            double variance = Math.max(0, (squareSum - games * mean * mean) / (games - 1));
+            return Math.sqrt(variance / games);
+        }
+
+        double getUpperBound(double z){
+            return getDifference() + z * getStandardError();
+        }
+
+        double getLowerBound(double z){
+            return getDifference() - z * getStandardError();
+        }
+    }
+
+    /**
+     * The strategy is how the search moves between decks.
+     * @return The current strategy
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * The strategy is how the search moves between decks.
+     * @param strategy The new strategy
+     */
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * The round run count is the number of games a neighbor plays in the first round of a comparison.
+     * @return The current round run count
+     */
+    public int getRoundRunCount() {
+        return roundRunCount;
+    }
+
+    /**
+     * The round run count is the number of games a neighbor plays in the first round of a comparison.
+     * @param roundRunCount The new round run count
+     */
+    public void setRoundRunCount(int roundRunCount) {
+        if(roundRunCount < 2){
+            throw new IllegalArgumentException("roundRunCount must be at least 2, was " + roundRunCount);
+        }
+
+        this.roundRunCount = roundRunCount;
+    }
+
+    /**
+     * The max run count is the most games a neighbor plays in a comparison.
+     * @return The current max run count
+     */
+    public int getMaxRunCount() {
+        return maxRunCount;
+    }
+
+    /**
+     * The max run count is the most games a neighbor plays in a comparison.
+     * @param maxRunCount The new max run count
+     */
+    public void setMaxRunCount(int maxRunCount) {
+        if(maxRunCount < 2){
+            throw new IllegalArgumentException("maxRunCount must be at least 2, was " + maxRunCount);
+        }
+
+        this.maxRunCount = maxRunCount;
+    }
+
+    /**
+     * The confidence z is the number of standard errors by which a neighbor must be better to count as better.
+     * @return The current confidence z
+     */
+    public double getConfidenceZ() {
+        return confidenceZ;
+    }
+
+    /**
+     * The confidence z is the number of standard errors by which a neighbor must be better to count as better.
+     * @param confidenceZ The new confidence z
+     */
+    public void setConfidenceZ(double confidenceZ) {
+        if(!(confidenceZ > 0)){
+            throw new IllegalArgumentException("confidenceZ must be positive, was " + confidenceZ);
+        }
+
+        this.confidenceZ = confidenceZ;
+    }
+
+    /**
+     * The temperature is how many turns worse a neighbor simulated annealing moves to can be, at first: a neighbor
+     * that much worse is moved to one time in e.
+     * @return The current starting temperature
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * The temperature is how many turns worse a neighbor simulated annealing moves to can be, at first: a neighbor
+     * that much worse is moved to one time in e.
+     * @param temperature The new starting temperature
+     */
+    public void setTemperature(double temperature) {
+        if(!(temperature > 0)){
+            throw new IllegalArgumentException("temperature must be positive, was " + temperature);
+        }
+
+        this.temperature = temperature;
+    }
+
+    /**
+     * The cooling is what simulated annealing's temperature is multiplied by every step.
+     * @return The current cooling
+     */
+    public double getCooling() {
+        return cooling;
+    }
+
+    /**
+     * The cooling is what simulated annealing's temperature is multiplied by every step.
+     * @param cooling The new cooling, above 0 and below 1
+     */
+    public void setCooling(double cooling) {
+        if(!(cooling > 0 && cooling < 1)){
+            throw new IllegalArgumentException("cooling must be above 0 and below 1, was " + cooling);
+        }
+
+        this.cooling = cooling;
+    }
+
+    /**
+     * The thread count is the number of threads comparing neighbors, when the search has no evaluation service set
+     * with setEvaluationService and plays on its own.
+     * @return The current thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * The candidate count is the number of random neighbors simulated annealing compares each step.
+     * @return The current candidate count
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * The candidate count is the number of random neighbors simulated annealing compares each step. More candidates
+     * keep more threads busy, but each step plays more games.
+     * @param candidateCount The new candidate count
+     */
+    public void setCandidateCount(int candidateCount) {
+        if(candidateCount < 1){
+            throw new IllegalArgumentException("candidateCount must be at least 1, was " + candidateCount);
+        }
+
+        this.candidateCount = candidateCount;
+    }
+
+    /**
+     * The thread count is the number of threads comparing neighbors, when the search has no evaluation service set
+     * with setEvaluationService and plays on its own.
+     * @param threadCount The new thread count
+     */
+    public void setThreadCount(int threadCount) {
+        if(threadCount < 1){
+            throw new IllegalArgumentException("threadCount must be at least 1, was " + threadCount);
+        }
+
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Makes the neighbors be compared by another service, such as one shared with other work, instead of a service
+     * of the search's own. Each round is submitted with normal priority. The service isn't closed by this object.
+     * @param evaluationService The service, or null to go back to a service of the search's own.
+     */
+    public void setEvaluationService(EvaluationService evaluationService){
+        this.evaluationService = evaluationService;
+    }
+
+    /**
+     * Gives the search somewhere to report each step it takes, such as a line printed to the console. By default,
+     * steps aren't reported.
+     * @param progress The consumer of the step reports, or null to not report them.
+     */
+    public void setProgress(Consumer<String> progress){
+        this.progress = progress;
+    }
+}
@@ -1,5 +1,13 @@
+import java.io.IOException;
+
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        // With an experiment file, run its experiments instead. See ExperimentRunner.
+        if(args.length > 0){
+            ExperimentRunner.main(args);
+            return;
+        }
 
         long startTime = System.currentTimeMillis();
 
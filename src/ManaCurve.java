@@ -0,0 +1,215 @@
+/**
+ * ManaCurve estimates how fast a deck can win from its land count and the costs of its cards, without playing a
+ * game.
+ *
+ * The number of lands drawn by each turn is hypergeometric, so the chance of having each amount of mana on a turn
+ * can be worked out exactly (one land is played per turn, so mana is the smaller of the turn and the lands drawn).
+ * For every turn, and every amount of mana with its chance, the cards drawn so far are cast in order of damage per
+ * mana, as if fractions of cards could be cast with leftover mana. Cards are counted by their expected number of
+ * copies drawn, and mulligans are ignored.
+ *
+ * Every simplification favors the deck, so the estimate is optimistic: a deck that is a turn slower on paper than the
+ * best decks are in play is not going to catch up. It is not a strict bound, since only the expected damage is
+ * compared with the enemy's life, but it is only used to decide how many games a deck is worth.
+ */
+class ManaCurve {
+
+    private static final int OPENING_HAND_SIZE = 7;
+
+    private ManaCurve(){
+    }
+
+    /**
+     * Estimates the average turn a deck wins on, optimistically.
+     * @param deck The deck to estimate.
+     * @return The estimated win turn, from 0 to Game.MAX_TURN. Fractions of a turn interpolate between the turn
+     *     before the enemy's life is reached and the turn it is.
+     */
+    static double estimateWinTurn(RankedDeck deck){
+        CardCatalog catalog = deck.cardCatalog;
+        int deckSize = deck.size();
+        int landCount = 0;
+        int nonlandTypes = 0;
+
+        for(int i = 0; i < catalog.getCatalogSize(); i++){
+            if(deck.getCount(i) == 0){
+                continue;
+            }
+
+            if(catalog.getCardAt(i).type == Card.CardType.Land){
+                landCount += deck.getCount(i);
+            }
+            else{
+                nonlandTypes++;
+            }
+        }
+
+        if(deckSize == 0 || nonlandTypes == 0){
+            return Game.MAX_TURN;
+        }
+
+        // the deck's nonland cards, with the damage they deal once and the attack they add every turn
+        int[] costs = new int[nonlandTypes];
+        int[] damages = new int[nonlandTypes];
+        int[] attacks = new int[nonlandTypes];
+        double[] copies = new double[nonlandTypes];
+        int type = 0;
+
+        for(int i = 0; i < catalog.getCatalogSize(); i++){
+            Card card = catalog.getCardAt(i);
+
+            if(deck.getCount(i) == 0 || card.type == Card.CardType.Land){
+                continue;
+            }
+
+            costs[type] = card.cost;
+            damages[type] = PlaySearch.getTurnDamage(card);
+            attacks[type] = PlaySearch.getAttack(card);
+            copies[type] = deck.getCount(i);
+            type++;
+        }
+
+        return estimateWinTurn(deckSize, getManaOdds(deckSize, landCount), costs, damages, attacks, copies);
+    }
+
+    /**
+     * Estimates the average turn a deck wins on, optimistically, from its nonland cards. A card type with no copies
+     * adds nothing, so DeckSearch can estimate many decks with the same arrays.
+     * @param deckSize The number of cards in the deck.
+     * @param manaOdds The chance of having each amount of mana on each turn, from getManaOdds.
+     * @param costs The cost of each nonland card type.
+     * @param damages The damage each type deals on the turn it is cast, which includes a haste creature's attack.
+     * @param attacks The attack each type adds to the board.
+     * @param copies The number of copies of each type.
+     * @return The estimated win turn, from 0 to Game.MAX_TURN.
+     */
+    static double estimateWinTurn(int deckSize, double[][] manaOdds, int[] costs, int[] damages, int[] attacks,
+                                  double[] copies){
+        double previousDamage = 0;
+
+        for(int turn = 1; turn <= Game.MAX_TURN; turn++){
+            double damage = getDamageBy(turn, deckSize, manaOdds, costs, damages, attacks, copies);
+
+            if(damage >= Enemy.STARTING_LIFE){
+                return turn - 1 + (Enemy.STARTING_LIFE - previousDamage) / (damage - previousDamage);
+            }
+
+            previousDamage = damage;
+        }
+
+        return Game.MAX_TURN;
+    }
+
+    /**
+     * Gets the chance of having each amount of mana on each turn.
+     * @return odds[turn][mana], for turns 1 to Game.MAX_TURN and mana from 0 to the turn.
+     */
+    static double[][] getManaOdds(int deckSize, int landCount){
+        double[] logFactorials = new double[deckSize + 1];
+        for(int i = 1; i <= deckSize; i++){
+            logFactorials[i] = logFactorials[i - 1] + Math.log(i);
+        }
+
+        double[][] odds = new double[Game.MAX_TURN + 1][];
+
+        for(int turn = 1; turn <= Game.MAX_TURN; turn++){
+            int drawn = Math.min(deckSize, OPENING_HAND_SIZE + turn - 1);
+            odds[turn] = new double[turn + 1];
+
+            for(int lands = Math.max(0, drawn - (deckSize - landCount)); lands <= Math.min(drawn, landCount); lands++){
+                double chance = Math.exp(logChoose(logFactorials, landCount, lands)
+                        + logChoose(logFactorials, deckSize - landCount, drawn - lands)
+                        - logChoose(logFactorials, deckSize, drawn));
+
+                // one land is played per turn
+                odds[turn][Math.min(turn, lands)] += chance;
+            }
+        }
+
+        return odds;
+    }
+
+    private static double logChoose(double[] logFactorials, int n, int k){
+        return logFactorials[n] - logFactorials[k] - logFactorials[n - k];
+    }
+
+    /**
+     * Gets the expected damage dealt by the end of a turn, casting the cards that do the most damage by that turn
+     * per mana first.
+     */
+    private static double getDamageBy(int lastTurn, int deckSize, double[][] manaOdds, int[] costs, int[] damages,
+                                      int[] attacks, double[] copies){
+        int types = costs.length;
+        double[] cast = new double[types];
+        double[] castThisTurn = new double[types];
+        double[] values = new double[types];
+        int[] order = new int[types];
+        double damage = 0;
+
+        for(int turn = 1; turn <= lastTurn; turn++){
+            double drawnFraction = Math.min(1.0, (double) (OPENING_HAND_SIZE + turn - 1) / deckSize);
+
+            for(int i = 0; i < types; i++){
+                // a creature attacks every turn after the one it is cast on. A haste creature's attack on that turn
+                // is already in its damage
+                int attackTurns = lastTurn - turn;
+                values[i] = damages[i] + (double) attacks[i] * attackTurns;
+                castThisTurn[i] = 0;
+            }
+            sortByValuePerMana(order, values, costs);
+
+            for(int mana = 0; mana <= turn; mana++){
+                double chance = manaOdds[turn][mana];
+                if(chance == 0){
+                    continue;
+                }
+
+                double manaLeft = mana;
+
+                for(int i : order){
+                    double inHand = copies[i] * drawnFraction - cast[i];
+
+                    if(values[i] <= 0 || costs[i] > mana || inHand <= 0){
+                        continue;
+                    }
+
+                    double casts = costs[i] == 0 ? inHand : Math.min(inHand, manaLeft / costs[i]);
+                    manaLeft -= casts * costs[i];
+                    castThisTurn[i] += chance * casts;
+                }
+            }
+
+            for(int i = 0; i < types; i++){
+                cast[i] += castThisTurn[i];
+                damage += castThisTurn[i] * values[i];
+            }
+        }
+
+        return damage;
+    }
+
+    /**
+     * Sorts card types from the most damage per mana to the least. Cards that cost nothing come first.
+     */
+    private static void sortByValuePerMana(int[] order, double[] values, int[] costs){
+        for(int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+
+        for(int i = 1; i < order.length; i++){
+            int current = order[i];
+            double currentValue = valuePerMana(values[current], costs[current]);
+            int j = i - 1;
+
+            while(j >= 0 && valuePerMana(values[order[j]], costs[order[j]]) < currentValue){
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+    }
+
+    private static double valuePerMana(double value, int cost){
+        return cost == 0 ? Double.POSITIVE_INFINITY : value / cost;
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Random;
+
+/**
+ * PairedRandom is a Random that is reseeded for every game, so games can be played with common random numbers: the
+ * same seed gives the same shuffles and mulligans to every deck, and decks are compared on the same luck.
+ *
+ * It can also be antithetic, which mirrors every nextInt(bound) result r to bound - 1 - r. Shuffles are made of
+ * those calls, so an antithetic game gets the opposite of the shuffles its seed would give, and a game and its
+ * antithetic partner tend to have opposite luck.
+ *
+ * The numbers come from SplitMix64, which is a counter run through a mixing function, instead of Random's
+ * synchronized linear congruential generator. Reseeding only sets the counter, without Random's synchronized
+ * setSeed, so it is cheap, and a seed taken from another generator's nextLong splits off an independent stream, so
+ * every game gets a generator of its own. It isn't thread safe.
+ */
+class PairedRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private boolean antithetic;
+    // set by setSeed, which Random's constructor calls before this class's fields are initialized
+    private long state;
+
+    /**
+     * Reseeds this Random for a game.
+     * @param seed The game's seed.
+     * @param antithetic True to mirror the results of the seed.
+     */
+    void reseed(long seed, boolean antithetic){
+        setSeed(seed);
+        this.antithetic = antithetic;
+    }
+
+    @Override
+    public void setSeed(long seed){
+        // Random's own seed is never used, since every number comes from next or nextLong
+        state = seed;
+    }
+
+    @Override
+    public long nextLong(){
+        state += GOLDEN_GAMMA;
+        return scramble(state);
+    }
+
+    @Override
+    protected int next(int bits){
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * Random's nextGaussian keeps every second value for the next call, and only Random's setSeed forgets it, so
+     * this makes one value per call instead, and a reseeded game never gets a value left from the game before.
+     */
+    @Override
+    public double nextGaussian(){
+        double x;
+        double y;
+        double s;
+
+        do{
+            x = 2 * nextDouble() - 1;
+            y = 2 * nextDouble() - 1;
+            s = x * x + y * y;
+        } while(s >= 1 || s == 0);
+
+        return x * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+    }
+
+    @Override
+    public int nextInt(int bound){
+        int r = super.nextInt(bound);
+        return antithetic ? bound - 1 - r : r;
+    }
+
+    /**
+     * Mixes a seed with a number, such as a generation or game number, into a new seed.
+     * @param seed The seed.
+     * @param n The number.
+     * @return The mixed seed.
+     */
+    static long mix(long seed, long n){
+        return scramble(seed + (n + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long scramble(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
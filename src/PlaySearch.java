@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/**
+ * PlaySearch finds the best combination of cards to play in a turn without building every possible play.
+ *
+ * Each candidate card has a cost, the damage it deals this turn, and the attack it adds to the board. Both play
+ * rankings are a weighted sum of those, so picking the best play is a 0/1 knapsack over cost with the player's
+ * mana as the budget. The search is a dynamic program over mana, so plays that cost too much are never built, and
+ * the arrays are reused between searches so a turn doesn't allocate anything.
+ */
+class PlaySearch {
+
+    /**
+     * The rankings a play can be chosen by.
+     */
+    enum Rank {
+        // Prioritizes damage that can be dealt on the current turn.
+        Turn,
+        // Prioritizes long-term damage.
+        Overall
+    }
+
+    // The weight of the primary part of a rank, so any amount of it beats the secondary part.
+    private static final int RANK_WEIGHT = 100;
+
+    private int size;
+    private int[] costs = new int[8];
+    private int[] turnDamages = new int[8];
+    private int[] attacks = new int[8];
+    private boolean[] chosen = new boolean[8];
+
+    // best[m] is the best rank found so far for a play costing at most m mana
+    private long[] best = new long[8];
+    // taken[i * (mana + 1) + m] is true if card i improved best[m] when it was considered
+    private boolean[] taken = new boolean[64];
+
+    private int chosenTurnDamage;
+    private int chosenAttack;
+    private int chosenCost;
+
+    /**
+     * Removes all candidate cards.
+     */
+    void clear(){
+        size = 0;
+    }
+
+    /**
+     * Adds a candidate card to the search.
+     * @param card The card that could be played.
+     */
+    void add(Card card){
+        add(card.cost, getTurnDamage(card), getAttack(card));
+    }
+
+    /**
+     * Adds a candidate card to the search.
+     * @param cost The converted mana cost of the card.
+     * @param turnDamage The damage the card deals on the turn it is played.
+     * @param attack The attack power the card adds to the board.
+     */
+    void add(int cost, int turnDamage, int attack){
+        if(size == costs.length){
+            int length = size * 2;
+            costs = Arrays.copyOf(costs, length);
+            turnDamages = Arrays.copyOf(turnDamages, length);
+            attacks = Arrays.copyOf(attacks, length);
+            chosen = new boolean[length];
+        }
+
+        costs[size] = cost;
+        turnDamages[size] = turnDamage;
+        attacks[size] = attack;
+        size++;
+    }
+
+    /**
+     * @return The number of candidate cards.
+     */
+    int size(){
+        return size;
+    }
+
+    /**
+     * Finds the best play costing at most mana. Afterwards, isChosen tells which candidates are in the play.
+     * When several plays share the best rank, the one using the earliest candidates wins.
+     * @param mana The mana available to pay for the play.
+     * @param rank The ranking the play is chosen by.
+     * @return The rank of the best play.
+     */
+    long search(int mana, Rank rank){
+        int width = Math.max(mana, 0) + 1;
+
+        if(best.length < width){
+            best = new long[width * 2];
+        }
+        if(taken.length < size * width){
+            taken = new boolean[size * width * 2];
+        }
+
+        Arrays.fill(best, 0, width, 0L);
+
+        for(int i = 0; i < size; i++){
+            int cost = costs[i];
+            long value = getRank(i, rank);
+            int row = i * width;
+
+            for(int m = width - 1; m >= 0; m--){
+                boolean take = m >= cost && best[m - cost] + value > best[m];
+
+                if(take){
+                    best[m] = best[m - cost] + value;
+                }
+                taken[row + m] = take;
+            }
+        }
+
+        chosenTurnDamage = 0;
+        chosenAttack = 0;
+        chosenCost = 0;
+
+        int m = width - 1;
+        for(int i = size - 1; i >= 0; i--){
+            chosen[i] = taken[i * width + m];
+
+            if(chosen[i]){
+                m -= costs[i];
+                chosenTurnDamage += turnDamages[i];
+                chosenAttack += attacks[i];
+                chosenCost += costs[i];
+            }
+        }
+
+        return best[width - 1];
+    }
+
+    /**
+     * @param index The index of a candidate, in the order they were added.
+     * @return True if the candidate is part of the last play found, otherwise false.
+     */
+    boolean isChosen(int index){
+        return chosen[index];
+    }
+
+    /**
+     * @return The amount of damage that the last play found will do on the current turn.
+     */
+    int getChosenTurnDamage(){
+        return chosenTurnDamage;
+    }
+
+    /**
+     * @return The amount of attack power that the last play found will add to the board.
+     */
+    int getChosenAttack(){
+        return chosenAttack;
+    }
+
+    /**
+     * @return The total converted mana cost of the last play found.
+     */
+    int getChosenCost(){
+        return chosenCost;
+    }
+
+    private long getRank(int index, Rank rank){
+        if(rank == Rank.Turn){
+            return (long) turnDamages[index] * RANK_WEIGHT + attacks[index];
+        }
+
+        return (long) attacks[index] * RANK_WEIGHT + turnDamages[index];
+    }
+
+    /**
+     * @param card A card that could be played.
+     * @return The amount of damage that the card will do on the turn it is played.
+     */
+    static int getTurnDamage(Card card){
+        if (card.type == Card.CardType.Spell) {
+            return ((Spell) card).damage;
+        }
+        else if (card.type == Card.CardType.Creature && ((Creature) card).hasAbility(Creature.Ability.Haste)) {
+            return ((Creature) card).attack;
+        }
+
+        return 0;
+    }
+
+    /**
+     * @param card A card that could be played.
+     * @return The amount of attack power that the card will add to the board.
+     */
+    static int getAttack(Card card){
+        if (card.type == Card.CardType.Creature) {
+            return ((Creature) card).attack;
+        }
+
+        return 0;
+    }
+}
@@ -1,5 +1,6 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 public class Player {
     protected String name;
@@ -7,32 +8,104 @@ public class Player {
 	protected int mana;
 	protected Deck deck;
 	protected List<Card> hand;
-	protected List<Creature> creatures;
+	protected Battlefield battlefield;
 	protected List<Land> lands;
+	protected Random rand;
+	// the deck's draws and mulligans come from a generator of its own, split from rand for each game
+	private final PairedRandom deckRand = new PairedRandom();
 
 	public Player(String name){
         this(name, new Deck(Deck.Option.Random));
 	}
 
 	public Player(String name, Deck deck){
+		this(name, deck, new Random());
+	}
+
+	public Player(String name, Deck deck, Random rand){
 		this.name = name;
+		this.rand = rand;
 		life = 20;
 		mana = 0;
 		this.deck = deck;
 		hand = new ArrayList<>();
-		creatures = new ArrayList<>();
+		battlefield = new Battlefield();
 		lands = new ArrayList<>();
 
-		deck.shuffle();
+		shuffleDeck();
 		draw(7);
 	}
 
+	/**
+	 * Replaces the cards in this player's deck with the cards of another deck, and saves them as the order the
+	 * deck resets to. The player's Deck object is reused.
+	 * @param deck The deck to copy the cards from.
+	 */
+	public void setDeck(Deck deck){
+		this.deck.setCardCatalog(deck.cardCatalog);
+		this.deck.load(deck.getCardList());
+	}
+
+	/**
+	 * Replaces the cards in this player's deck with the cards of a deck list, like setDeck(Deck).
+	 * @param deck The deck list to copy the cards from.
+	 */
+	public void setDeck(RankedDeck deck){
+		this.deck.setCardCatalog(deck.cardCatalog);
+		this.deck.load(deck.getCardList());
+	}
+
+	/**
+	 * Resets the player for a new game without allocating: the hand and battlefield are cleared, the deck is
+	 * restored to its saved order and shuffled, and a new hand is drawn.
+	 */
+	public void reset(){
+		clear();
+		deck.reset();
+		shuffleDeck();
+		draw(7);
+	}
+
+	/**
+	 * Shuffles the deck lazily with a generator seeded from rand, so a game takes one number from rand however many
+	 * cards it draws. An empty deck has nothing to shuffle, and takes nothing.
+	 */
+	private void shuffleDeck(){
+		if(deck.size() > 0){
+			deckRand.reseed(rand.nextLong(), false);
+		}
+
+		deck.shuffle(deckRand);
+	}
+
+	/**
+	 * Resets the player for a new game like reset, but shuffles the deck with a seed, so decks reset with the same
+	 * seed draw the cards they have in common in the same order. See Deck.shuffle(long, boolean).
+	 * @param seed The seed of the shuffle.
+	 * @param reversed True to put the cards in the opposite order the seed gives.
+	 */
+	public void reset(long seed, boolean reversed){
+		clear();
+		deck.reset();
+		deckRand.reseed(seed, reversed);
+		deck.shuffle(seed, reversed);
+		draw(7);
+	}
+
+	private void clear(){
+		life = 20;
+		mana = 0;
+		hand.clear();
+		battlefield.clear();
+		lands.clear();
+	}
+
 	// returns true if the card is played, otherwise false
 	public boolean play(Card card){
 		if(mana >= card.cost) {
-			Game.debug("Played " + card.name + " for " + card.cost + " mana.");
-
-            card.tapped = false;
+			if(Game.DEBUG) {
+				Game.debug("Played " + card.name + " for " + card.cost + " mana.");
+			}
 
 			hand.remove(card);
 			mana -= card.cost;
@@ -57,7 +130,9 @@ public class Player {
 
 	public boolean play(Card card, Enemy target){
 		if(mana >= card.cost) {
-			Game.debug("Played " + card.name + " for " + card.cost + " mana.");
+			if(Game.DEBUG) {
+				Game.debug("Played " + card.name + " for " + card.cost + " mana.");
+			}
 
 			hand.remove(card);
 			mana -= card.cost;
@@ -90,13 +165,11 @@ public class Player {
 	}
 
 	private void playCreature(Creature card){
-		card.tapped = !card.hasAbility(Creature.Ability.Haste);
-        creatures.add(card);
+        battlefield.add(card);
 	}
 
 	private void playCreature(Creature card, Enemy target){
-        card.tapped = !card.hasAbility(Creature.Ability.Haste);
-        creatures.add(card);
+        battlefield.add(card);
 	}
 
     /**
@@ -116,17 +189,7 @@ public class Player {
 	}
 
     public void upkeep(){
-
-        for(Creature creature: creatures){
-            if(creature.tapped)
-                creature.tapped = false;
-            if(creature.summoningSick)
-                creature.summoningSick = false;
-        }
-
-        for(Land land: lands){
-            land.tapped = false;
-        }
+        battlefield.untapAll();
     }
 
     public void endOfTurn(){
@@ -136,10 +199,10 @@ public class Player {
     public int mulligan(){
         int handSize = hand.size();
 
-        deck.addAll(hand);
+        deck.putBack(hand);
         hand.clear();
 
-        deck.shuffle();
+        deck.shuffle(deckRand);
         --handSize;
 
         draw(handSize);
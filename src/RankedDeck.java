@@ -1,75 +1,551 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
 
 /**
- * RankedDeck is a subclass of deck which adds some functionality that helps rank decks.
+ * RankedDeck is a deck list which adds some functionality that helps rank decks.
+ *
+ * A RankedDeck stores the number of copies of each card in its CardCatalog rather than a List of Cards, so
+ * breeding, mutation, equality and hashing all work on a small array. The List of Cards is only built when
+ * a game needs it, and can't be changed, so it can't disagree with the counts.
+ *
+ * A RankedDeck is not a Deck: it is a deck list, which can't be drawn from or shuffled, since its equality and hash
+ * depend on its cards. Games play with a Deck of its cards instead (see Player.setDeck and toDeck).
  */
-public class RankedDeck extends Deck{
-    private int runCount;
-    private double winTurnSum;
+public class RankedDeck {
+    final CardCatalog cardCatalog;
+    // the cards in sorted order, built when first needed
+    private List<Card> cardList;
+    private DeckStats stats;
+
+    // counts[i] is the number of copies of the card at catalog index i
+    private final int[] counts;
+    private int size;
+    // a Zobrist hash of the counts, kept up to date as cards are added and removed
+    private long compositionHash;
 
     // generates a random deck
-    public RankedDeck(Option option){
-        super(option);
-        runCount= 0;
-        winTurnSum = 0;
+    public RankedDeck(Deck.Option option){
+        this(new CardCatalog());
     }
 
     public RankedDeck(CardCatalog catalog){
-        super(Deck.Option.Random, catalog);
-        runCount= 0;
-        winTurnSum = 0;
+        this(catalog, new int[catalog.getCatalogSize()]);
+
+        for (int i = 0; i < 15 + catalog.rand.nextInt(10); i++) {
+            addCopy(catalog.getRandomLandIndex());
+        }
+
+        int landCount = size;
+
+        for (int i = 0; i < 60 - landCount; i++) {
+            addCopy(catalog.getRandomNonlandIndex());
+        }
     }
 
     public RankedDeck(Deck deck){
-        super(deck);
-        runCount = 0;
-        winTurnSum = 0;
+        this(deck.cardCatalog != null ? deck.cardCatalog : catalogOf(deck.getCardList()), deck.getCardList());
     }
 
     public RankedDeck(List<Card> deck){
-        this.deck = new ArrayList<>(deck);
-        runCount = 0;
-        winTurnSum = 0;
+        this(catalogOf(deck), deck);
+    }
+
+    /**
+     * Creates a RankedDeck from a List of Cards, all of which must be in the catalog.
+     * @param catalog The catalog of cards the deck is made from.
+     * @param deck The cards in the deck.
+     */
+    public RankedDeck(CardCatalog catalog, List<Card> deck){
+        this(catalog, new int[catalog.getCatalogSize()]);
+
+        for(Card card : deck){
+            addCopy(catalog.getCardIndex(card.name));
+        }
+    }
+
+    /**
+     * Creates a RankedDeck from the number of copies of each card in a catalog.
+     * @param catalog The catalog of cards the deck is made from.
+     * @param counts The number of copies of each card, by catalog index. The array is used, not copied.
+     */
+    public RankedDeck(CardCatalog catalog, int[] counts){
+        this.cardCatalog = catalog;
+        this.counts = counts;
+
+        for(int index = 0; index < counts.length; index++){
+            size += counts[index];
+
+            for(int copy = 1; copy <= counts[index]; copy++){
+                compositionHash ^= getZobristKey(index, copy);
+            }
+        }
+
+        stats = new DeckStats();
+    }
+
+    /**
+     * Creates a catalog for a List of Cards that didn't come with one.
+     * @param deck The cards in a deck.
+     * @return A catalog containing one of each card in the deck.
+     */
+    private static CardCatalog catalogOf(List<Card> deck){
+        Map<String, Card> cards = new LinkedHashMap<>();
+
+        for(Card card : deck){
+            cards.putIfAbsent(card.name, card);
+        }
+
+        return new CardCatalog(cards.values());
     }
 
     public double playGames(int gameCount){
+        return playGames(gameCount, new Random());
+    }
+
+    /**
+     * Plays games with this deck, shuffling with the supplied Random.
+     * @param gameCount The number of games to play.
+     * @param rand The Random used for shuffles and mulligans. Not shared between threads.
+     * @return The average win turn of the deck.
+     */
+    public double playGames(int gameCount, Random rand){
+        return playGames(gameCount, new Game(rand));
+    }
+
+    /**
+     * Plays games with this deck, reusing a Game for every run. The Game is reset between runs rather than
+     * recreated, so once it has warmed up no objects are allocated.
+     * @param gameCount The number of games to play.
+     * @param game The Game used to play. Its deck is replaced with this deck.
+     * @return The average win turn of the deck.
+     */
+    public double playGames(int gameCount, Game game){
+        long start = System.nanoTime();
+        game.setDeck(this);
+
+        int[] winTurnCounts = new int[DeckStats.WIN_TURNS];
+
         for(int i = 0; i < gameCount; i++){
-            addWinTurn(new Game(copy()).playGame());
+            if(i > 0){
+                game.reset();
+            }
+
+            winTurnCounts[game.playGame()]++;
         }
 
+        stats.addWinTurns(winTurnCounts);
+        SimulationMetrics.getInstance().recordGames(gameCount, System.nanoTime() - start);
+
         return getAverageWinTurn();
     }
 
-    public void addWinTurn(double winTurn) {
-        runCount++;
-        winTurnSum += winTurn;
+    /**
+     * Plays games with this deck using common random numbers, numbered by the next numbers its results hand out
+     * (see DeckStats.reserveGames).
+     * @param gameCount The number of games to play.
+     * @param game The Game used to play. Its deck is replaced with this deck.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @return The average win turn of the deck.
+     */
+    public double playGames(int gameCount, Game game, long seed, boolean antithetic){
+        return playGames(stats.reserveGames(gameCount), gameCount, game, seed, antithetic);
+    }
+
+    /**
+     * Plays numbered games with this deck using common random numbers. The seed of a game comes from its number, so
+     * the nth game of every deck played with the same seed gets the same shuffles and mulligans. Decks that share
+     * results must not play the same numbers, so callers get them from DeckStats.reserveGames.
+     * @param firstGame The number of the first game.
+     * @param gameCount The number of games to play.
+     * @param game The Game used to play. Its deck is replaced with this deck.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs: every odd game uses the seed of the game before it,
+     *     with the opposite luck.
+     * @return The average win turn of the deck.
+     */
+    public double playGames(int firstGame, int gameCount, Game game, long seed, boolean antithetic){
+        return playGames(firstGame, gameCount, game, seed, antithetic, null);
+    }
+
+    /**
+     * Plays numbered games with this deck using common random numbers, keeping each game's win turn, so they can be
+     * paired with another deck's games with the same numbers.
+     * @param firstGame The number of the first game.
+     * @param gameCount The number of games to play.
+     * @param game The Game used to play. Its deck is replaced with this deck.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @param gameWinTurns If not null, gets the win turn of each game, at the index of its number.
+     * @return The average win turn of the deck.
+     */
+    double playGames(int firstGame, int gameCount, Game game, long seed, boolean antithetic, int[] gameWinTurns){
+        long start = System.nanoTime();
+        game.setDeck(this);
+
+        int[] winTurnCounts = new int[DeckStats.WIN_TURNS];
+
+        for(int i = firstGame; i < firstGame + gameCount; i++){
+            if(antithetic){
+                game.reset(PairedRandom.mix(seed, i / 2), i % 2 == 1);
+            }
+            else{
+                game.reset(PairedRandom.mix(seed, i), false);
+            }
+
+            int winTurn = game.playGame();
+            winTurnCounts[winTurn]++;
+
+            if(gameWinTurns != null){
+                gameWinTurns[i] = winTurn;
+            }
+        }
+
+        stats.addWinTurns(winTurnCounts);
+        SimulationMetrics.getInstance().recordGames(gameCount, System.nanoTime() - start);
+
+        return getAverageWinTurn();
+    }
+
+    /**
+     * Plays games with this deck in batches (see BatchGame). The results are the same as playing the games one at a
+     * time with a Game using the same Random.
+     * @param gameCount The number of games to play.
+     * @param batch The BatchGame used to play.
+     * @return The average win turn of the deck.
+     */
+    public double playGames(int gameCount, BatchGame batch){
+        long start = System.nanoTime();
+        batch.setDeck(this);
+        batch.play(gameCount);
+        stats.addWinTurns(batch.getWinTurnCounts());
+        SimulationMetrics.getInstance().recordGames(gameCount, System.nanoTime() - start);
+
+        return getAverageWinTurn();
+    }
+
+    /**
+     * Plays games with this deck in batches using common random numbers, with the same games as
+     * playGames(int, Game, long, boolean).
+     * @param gameCount The number of games to play.
+     * @param batch The BatchGame used to play.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @return The average win turn of the deck.
+     */
+    public double playGames(int gameCount, BatchGame batch, long seed, boolean antithetic){
+        return playGames(stats.reserveGames(gameCount), gameCount, batch, seed, antithetic, null);
+    }
+
+    /**
+     * Plays numbered games with this deck in batches using common random numbers, keeping each game's win turn, so
+     * they can be paired with another deck's games with the same numbers.
+     * @param firstGame The number of the first game.
+     * @param gameCount The number of games to play.
+     * @param batch The BatchGame used to play.
+     * @param seed The seed the games' seeds come from.
+     * @param antithetic True to play games in antithetic pairs.
+     * @param gameWinTurns If not null, gets the win turn of each game, at the index of its number.
+     * @return The average win turn of the deck.
+     */
+    double playGames(int firstGame, int gameCount, BatchGame batch, long seed, boolean antithetic,
+                     int[] gameWinTurns){
+        long start = System.nanoTime();
+        batch.setDeck(this);
+        batch.play(firstGame, gameCount, seed, antithetic, gameWinTurns);
+        stats.addWinTurns(batch.getWinTurnCounts());
+        SimulationMetrics.getInstance().recordGames(gameCount, System.nanoTime() - start);
+
+        return getAverageWinTurn();
+    }
+
+    public void addWinTurn(int winTurn) {
+        stats.addWinTurn(winTurn);
+    }
+
+    /**
+     * @return The results of the games played by this deck.
+     */
+    public DeckStats getStats(){
+        return stats;
+    }
+
+    /**
+     * Makes this deck record its games in another DeckStats, usually one shared by decks with the same cards.
+     * @param stats The DeckStats to use.
+     */
+    public void setStats(DeckStats stats){
+        this.stats = stats;
+    }
+
+    /**
+     * @return The number of games this deck has played.
+     */
+    public int getRunCount(){
+        return stats.getRunCount();
     }
 
-    @Override
     public RankedDeck copy(){
-        RankedDeck copy = new RankedDeck(new Deck(new ArrayList<>(deck)));
-        copy.save();
+        return new RankedDeck(cardCatalog, counts.clone());
+    }
+
+    /**
+     * Creates a new deck from the first splitPos cards of this deck and the cards of another deck from splitPos on,
+     * with both decks in sorted order.
+     * @param tail The deck that the cards after splitPos come from. Must use the same catalog.
+     * @param splitPos The number of cards taken from this deck.
+     * @return The new deck.
+     */
+    public RankedDeck splice(RankedDeck tail, int splitPos){
+        int[] childCounts = new int[counts.length];
+        int headLeft = splitPos;
+        int tailSkip = splitPos;
+
+        for(int index : cardCatalog.getSortedIndexes()){
+            int fromHead = Math.min(counts[index], headLeft);
+            headLeft -= fromHead;
+
+            int skipped = Math.min(tail.counts[index], tailSkip);
+            tailSkip -= skipped;
+
+            childCounts[index] = fromHead + tail.counts[index] - skipped;
+        }
 
-        return copy;
+        return new RankedDeck(cardCatalog, childCounts);
+    }
+
+    /**
+     * Replaces the Card at a position, in sorted order, with a copy of another catalog card.
+     * @param pos The index of the card to replace.
+     * @param cardIndex The catalog index of the new card.
+     */
+    public void replace(int pos, int cardIndex){
+        removeCopy(getIndexAt(pos));
+        addCopy(cardIndex);
+    }
+
+    public void replace(int pos, Card newCard){
+        replace(pos, cardCatalog.getCardIndex(newCard.name));
+    }
+
+    public void add(Card card){
+        addCopy(cardCatalog.getCardIndex(card.name));
+    }
+
+    public void addAll(Collection<Card> cards){
+        for(Card card : cards){
+            add(card);
+        }
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param cardIndex A catalog index.
+     * @return The number of copies of the card in this deck.
+     */
+    public int getCount(int cardIndex){
+        return counts[cardIndex];
+    }
+
+    /**
+     * Builds the List of Cards for this deck, in sorted order, if it hasn't been built since the deck last changed.
+     * @return The cards in this deck, which can't be modified.
+     */
+    List<Card> getCardList(){
+        if(cardList == null){
+            List<Card> cards = new ArrayList<>(size);
+
+            for(int index : cardCatalog.getSortedIndexes()){
+                Card card = cardCatalog.getCardAt(index);
+
+                for(int i = 0; i < counts[index]; i++){
+                    cards.add(card);
+                }
+            }
+
+            cardList = Collections.unmodifiableList(cards);
+        }
+
+        return cardList;
+    }
+
+    /**
+     * @param n A position in the deck, in sorted order.
+     * @return The card at that position.
+     */
+    public Card get(int n){
+        return getCardList().get(n);
+    }
+
+    /**
+     * @return A Deck of this deck's cards, in sorted order, which can be drawn from and shuffled.
+     */
+    public Deck toDeck(){
+        Deck deck = new Deck(new ArrayList<>(getCardList()));
+        deck.setCardCatalog(cardCatalog);
+
+        return deck;
+    }
+
+    private void addCopy(int cardIndex){
+        counts[cardIndex]++;
+        compositionHash ^= getZobristKey(cardIndex, counts[cardIndex]);
+        size++;
+        cardList = null;
+    }
+
+    private void removeCopy(int cardIndex){
+        compositionHash ^= getZobristKey(cardIndex, counts[cardIndex]);
+        counts[cardIndex]--;
+        size--;
+        cardList = null;
+    }
+
+    /**
+     * Gets the random key for having at least a number of copies of a card. The composition hash is the xor of
+     * the keys of every copy in the deck, so it doesn't depend on card order and is updated in O(1).
+     * @param cardIndex The catalog index of the card.
+     * @param copy Which copy of the card, starting from 1.
+     * @return The key.
+     */
+    private static long getZobristKey(int cardIndex, int copy){
+        // the SplitMix64 finalizer, which spreads the bits of consecutive inputs over the whole long
+        long z = ((long) cardIndex << 32 | copy) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return A hash of the number of copies of each card in this deck. Decks with the same cards have the same hash.
+     */
+    public long getCompositionHash(){
+        return compositionHash;
+    }
+
+    /**
+     * @return A copy of the number of copies of each card, by catalog index.
+     */
+    int[] getCounts(){
+        return counts.clone();
+    }
+
+    /**
+     * @param pos A position in the deck, in sorted order.
+     * @return The catalog index of the card at that position.
+     */
+    private int getIndexAt(int pos){
+        for(int index : cardCatalog.getSortedIndexes()){
+            if(pos < counts[index]){
+                return index;
+            }
+            pos -= counts[index];
+        }
+
+        throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size);
+    }
+
+    /**
+     * Writes this deck and its results in a compact binary form. Cards are written by name, so the deck can be read
+     * with another catalog that has the same cards.
+     * @param out The output to write to.
+     * @throws IOException If the output can't be written.
+     */
+    public void write(DataOutput out) throws IOException {
+        int distinctCards = 0;
+
+        for(int count : counts){
+            if(count > 0){
+                distinctCards++;
+            }
+        }
+
+        out.writeShort(distinctCards);
+
+        for(int index = 0; index < counts.length; index++){
+            if(counts[index] > 0){
+                out.writeUTF(cardCatalog.getCardAt(index).name);
+                out.writeShort(counts[index]);
+            }
+        }
+
+        stats.write(out);
+    }
+
+    /**
+     * Reads a deck written by write.
+     * @param in The input to read from.
+     * @param catalog The catalog of cards the deck is made from. Must contain every card in the deck.
+     * @return The deck, with its results.
+     * @throws IOException If the input can't be read.
+     */
+    public static RankedDeck read(DataInput in, CardCatalog catalog) throws IOException {
+        int[] counts = new int[catalog.getCatalogSize()];
+        int distinctCards = in.readShort();
+
+        for(int i = 0; i < distinctCards; i++){
+            counts[catalog.getCardIndex(in.readUTF())] += in.readShort();
+        }
+
+        RankedDeck deck = new RankedDeck(catalog, counts);
+        deck.setStats(DeckStats.read(in));
+
+        return deck;
     }
 
     public double getAverageWinTurn(){
-        if(runCount == 0){
-            return -1.0;
+        return stats.getAverageWinTurn();
+    }
+
+    /**
+     * Two RankedDecks are equal if they have the same number of copies of every card.
+     */
+    @Override
+    public boolean equals(Object o){
+        if(this == o){
+            return true;
         }
+        if(!(o instanceof RankedDeck)){
+            return false;
+        }
+
+        RankedDeck other = (RankedDeck) o;
+        return cardCatalog == other.cardCatalog && Arrays.equals(counts, other.counts);
+    }
 
-        return winTurnSum / runCount;
+    @Override
+    public int hashCode(){
+        return (int) (compositionHash ^ (compositionHash >>> 32));
     }
 
     @Override
     public String toString(){
+        int runCount = getRunCount();
+
         if(runCount > 0){
             return "Deck runs: " + runCount +
                     "\nAverage win turn: " + getAverageWinTurn()
-                    + "\n" + super.toString() + "\n";
+                    + "\n" + getDeckList() + "\n";
+        }
+
+        return "Average win turn: unknown\n" + getDeckList() + "\n";
+    }
+
+    private String getDeckList(){
+        String str = "Size: " + size + "\n";
+        str += "-- Deck List --\n";
+
+        for(int index : cardCatalog.getSortedIndexes()){
+            if(counts[index] > 0){
+                str += cardCatalog.getCardAt(index).name + ": " + counts[index] + "\n";
+            }
         }
 
-        return "Average win turn: unknown\n" + super.toString() + "\n";
+        return str;
     }
 }
@@ -0,0 +1,323 @@
+import java.util.Random;
+
+/**
+ * Selection chooses the parents that Genetics breeds a new generation from.
+ *
+ * Before a generation is bred, prepare is called once with the decks' results, and then select is called for every
+ * parent. Preparing takes at most linear time in the generation size, and each selection takes constant or
+ * logarithmic time, so large generations don't pay for a sort per parent. Each strategy's selection pressure is a
+ * parameter of its own, which means the same thing whatever the generation size.
+ *
+ * Usage:
+ * genetics.setSelection(new Selection.Tournament(3));
+ */
+public interface Selection {
+
+    /**
+     * Prepares to select parents from an evaluated generation.
+     * @param scores The decks' scores by the objective, where lower is better, in the generation's order, which is
+     *     best first.
+     * @param averageWinTurns The decks' average win turns, which break ties between equal scores.
+     */
+    void prepare(double[] scores, double[] averageWinTurns);
+
+    /**
+     * @param rand The Random to select with.
+     * @return The index of a parent in the generation.
+     */
+    int select(Random rand);
+
+    /**
+     * Compares two decks' results.
+     * @return True if the first deck is better than the second.
+     */
+    static boolean isBetter(double[] scores, double[] averageWinTurns, int first, int second){
+        if(scores[first] != scores[second]){
+            return scores[first] < scores[second];
+        }
+
+        return averageWinTurns[first] < averageWinTurns[second];
+    }
+
+    /**
+     * Skewed selection draws a position in the generation from a normal distribution centered on the best deck,
+     * folded back into the generation. This is how Genetics has always selected, and is the default. Its
+     * standard deviation is a seventh of the generation size, so about the best 11% of the decks are the
+     * parents of half the new generation.
+     */
+    class Skewed implements Selection {
+        private int size;
+
+        @Override
+        public void prepare(double[] scores, double[] averageWinTurns){
+            size = scores.length;
+        }
+
+        @Override
+        public int select(Random rand){
+            return getSkewedInt(rand, size);
+        }
+
+        /**
+         * Gets a random integer in the range of (0, max-1), skewed left towards 0.
+         * @param rand The Random to draw with.
+         * @param max The maximum integer that the function will return.
+         * @return A random int from 0 to max - 1.
+         */
+        static int getSkewedInt(Random rand, int max){
+            int ret = (int)(rand.nextGaussian() * max / 7.0);
+
+            if(ret < 0){
+                return (-ret - 1) % max;
+            }
+
+            return ret % max;
+        }
+    }
+
+    /**
+     * Tournament selection draws a few decks at random and selects the best of them. It doesn't need the generation
+     * to be in order.
+     */
+    class Tournament implements Selection {
+        private final int tournamentSize;
+        private double[] scores;
+        private double[] averageWinTurns;
+
+        /**
+         * @param tournamentSize The number of decks drawn for each selection. A larger tournament is more likely to
+         *     select the best decks, and a tournament of one selects at random.
+         */
+        public Tournament(int tournamentSize){
+            if(tournamentSize < 1){
+                throw new IllegalArgumentException("tournamentSize must be at least 1, was " + tournamentSize);
+            }
+
+            this.tournamentSize = tournamentSize;
+        }
+
+        @Override
+        public void prepare(double[] scores, double[] averageWinTurns){
+            this.scores = scores;
+            this.averageWinTurns = averageWinTurns;
+        }
+
+        @Override
+        public int select(Random rand){
+            int best = rand.nextInt(scores.length);
+
+            for(int i = 1; i < tournamentSize; i++){
+                int other = rand.nextInt(scores.length);
+
+                if(isBetter(scores, averageWinTurns, other, best)){
+                    best = other;
+                }
+            }
+
+            return best;
+        }
+
+        public int getTournamentSize(){
+            return tournamentSize;
+        }
+    }
+
+    /**
+     * Rank selection selects decks with a chance that falls linearly with their position in the generation, from
+     * pressure / size for the best deck to (2 - pressure) / size for the worst. The chances are kept in an alias
+     * table (see Vose's alias method), so a selection is one random number and two array reads, and the table is
+     * only rebuilt when the generation size changes.
+     */
+    class Rank implements Selection {
+        private final double pressure;
+        private double[] probabilities = new double[0];
+        private int[] aliases = new int[0];
+
+        /**
+         * @param pressure How many times the average chance of being selected the best deck has, from 1, which
+         *     selects at random, to 2, which never selects the worst deck.
+         */
+        public Rank(double pressure){
+            if(!(pressure >= 1 && pressure <= 2)){
+                throw new IllegalArgumentException("pressure must be from 1 to 2, was " + pressure);
+            }
+
+            this.pressure = pressure;
+        }
+
+        @Override
+        public void prepare(double[] scores, double[] averageWinTurns){
+            int size = scores.length;
+            if(size == probabilities.length){
+                return;
+            }
+
+            double[] weights = new double[size];
+            for(int rank = 0; rank < size; rank++){
+                double position = size == 1 ? 0 : (double) rank / (size - 1);
+                // scaled so the average weight is 1
+                weights[rank] = pressure - 2 * (pressure - 1) * position;
+            }
+
+            buildAliasTable(weights);
+        }
+
+        /**
+         * Splits the weights into equal columns of at most two outcomes each: a column's own outcome, with its
+         * probability, and an alias that fills the rest of the column.
+         */
+        private void buildAliasTable(double[] weights){
+            int size = weights.length;
+            probabilities = new double[size];
+            aliases = new int[size];
+
+            int[] small = new int[size];
+            int[] large = new int[size];
+            int smallCount = 0;
+            int largeCount = 0;
+
+            for(int i = 0; i < size; i++){
+                if(weights[i] < 1){
+                    small[smallCount++] = i;
+                }
+                else{
+                    large[largeCount++] = i;
+                }
+            }
+
+            while(smallCount > 0 && largeCount > 0){
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+
+                probabilities[less] = weights[less];
+                aliases[less] = more;
+
+                weights[more] += weights[less] - 1;
+                if(weights[more] < 1){
+                    small[smallCount++] = more;
+                }
+                else{
+                    large[largeCount++] = more;
+                }
+            }
+
+            // what's left is a full column, give or take rounding
+            while(largeCount > 0){
+                probabilities[large[--largeCount]] = 1;
+            }
+            while(smallCount > 0){
+                probabilities[small[--smallCount]] = 1;
+            }
+        }
+
+        @Override
+        public int select(Random rand){
+            int column = rand.nextInt(probabilities.length);
+
+            return rand.nextDouble() < probabilities[column] ? column : aliases[column];
+        }
+
+        public double getPressure(){
+            return pressure;
+        }
+    }
+
+    /**
+     * Truncation selection selects uniformly among the best fraction of the generation. The best decks are found
+     * with a partial quickselect, which takes linear time on average, so it doesn't need the generation to be in
+     * order.
+     */
+    class Truncation implements Selection {
+        private final double fraction;
+        private int[] best = new int[0];
+        private int count;
+        // the range of decks equal to the pivot after a partition
+        private int equalStart;
+        private int equalEnd;
+
+        /**
+         * @param fraction The fraction of the generation that can be selected, above 0 and at most 1. At least
+         *     one deck can always be selected.
+         */
+        public Truncation(double fraction){
+            if(!(fraction > 0 && fraction <= 1)){
+                throw new IllegalArgumentException("fraction must be above 0 and at most 1, was " + fraction);
+            }
+
+            this.fraction = fraction;
+        }
+
+        @Override
+        public void prepare(double[] scores, double[] averageWinTurns){
+            int size = scores.length;
+            count = Math.max(1, Math.min(size, (int) Math.round(size * fraction)));
+
+            if(best.length != size){
+                best = new int[size];
+            }
+            for(int i = 0; i < size; i++){
+                best[i] = i;
+            }
+
+            // moves the best count decks to the front, in no particular order
+            int left = 0;
+            int right = size - 1;
+            while(left < right){
+                partition(scores, averageWinTurns, left, right);
+
+                if(count - 1 < equalStart){
+                    right = equalStart - 1;
+                }
+                else if(count - 1 > equalEnd){
+                    left = equalEnd + 1;
+                }
+                else{
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Partitions best[left..right] three ways around its middle element: better decks, then decks equal to it,
+         * then worse decks. Equal decks are done with at once, so a generation of many equal scores still takes
+         * linear time.
+         * Sets equalStart and equalEnd to the range of the equal decks.
+         */
+        private void partition(double[] scores, double[] averageWinTurns, int left, int right){
+            int pivot = best[left + (right - left) / 2];
+            int less = left;
+            int i = left;
+            int greater = right;
+
+            while(i <= greater){
+                if(isBetter(scores, averageWinTurns, best[i], pivot)){
+                    swap(i++, less++);
+                }
+                else if(isBetter(scores, averageWinTurns, pivot, best[i])){
+                    swap(i, greater--);
+                }
+                else{
+                    i++;
+                }
+            }
+
+            equalStart = less;
+            equalEnd = greater;
+        }
+
+        private void swap(int i, int j){
+            int temp = best[i];
+            best[i] = best[j];
+            best[j] = temp;
+        }
+
+        @Override
+        public int select(Random rand){
+            return best[rand.nextInt(count)];
+        }
+
+        public double getFraction(){
+            return fraction;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * SimulationMetrics counts the games played and times the simulation and the genetic algorithm, so a long run can
+ * be watched while it works.
+ *
+ * The metrics are shared by every Game, BatchGame and Genetics object in the JVM. They can be read over JMX as the
+ * "goldfish:type=SimulationMetrics" MBean, as a Snapshot, or by having snapshots reported periodically.
+ *
+ * Counters are LongAdders, which spread updates from different threads across cells, and games add to them once per
+ * batch of games rather than once per game. Timing single games and their phases costs more, so only one game in
+ * SAMPLE_INTERVAL is timed, and the latency percentiles and phase times come from those games. With batch evaluation
+ * a game has no time of its own, so one batch in SAMPLE_INTERVAL is timed instead, and its time per game is kept
+ * apart from single games' latencies as the batch latency.
+ *
+ * Usage:
+ * Call register once to expose the metrics over JMX; Genetics does this when it is created.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+    /**
+     * The parts of a game that are timed.
+     */
+    enum Phase {
+        // Shuffling, drawing the opening hand and taking mulligans
+        Mulligan,
+        FindBestPlay,
+        Attack
+    }
+
+    // One game in this many has its time and phases sampled
+    static final int SAMPLE_INTERVAL = 64;
+
+    private static final String OBJECT_NAME = "goldfish:type=SimulationMetrics";
+    private static final SimulationMetrics instance = new SimulationMetrics();
+
+    // Latencies are kept in 4 buckets per power of two of nanoseconds, so a percentile is within 25%
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    // Games per second are measured over whole windows of this many nanoseconds
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final LongAdder gamesPlayed = new LongAdder();
+    private final LongAdder gameNanos = new LongAdder();
+    private final LongAdder[] latencyBuckets = new LongAdder[BUCKETS];
+    private final LongAdder[] batchLatencyBuckets = new LongAdder[BUCKETS];
+    private final LongAdder sampledGames = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+
+    private final LongAdder generationsEvaluated = new LongAdder();
+    private final LongAdder evaluationNanos = new LongAdder();
+    private final LongAdder generationsBred = new LongAdder();
+    private final LongAdder breedingNanos = new LongAdder();
+    private volatile long lastEvaluationNanos;
+    private volatile long lastBreedingNanos;
+    private volatile double fitnessCacheHitRate;
+    private volatile double bestAverageWinTurn = Double.NaN;
+    private volatile double medianAverageWinTurn = Double.NaN;
+
+    private volatile long startNanos = System.nanoTime();
+    // the games played in the current rate window, when it started, and the rate of the last whole window, or NaN
+    // before the first window ends
+    private final LongAdder windowGames = new LongAdder();
+    private volatile long windowNanos = startNanos;
+    private volatile double windowRate = Double.NaN;
+
+    private ScheduledExecutorService reporter;
+
+    private SimulationMetrics(){
+        for(int i = 0; i < BUCKETS; i++){
+            latencyBuckets[i] = new LongAdder();
+            batchLatencyBuckets[i] = new LongAdder();
+        }
+        for(int i = 0; i < phaseNanos.length; i++){
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return The metrics shared by the whole JVM.
+     */
+    public static SimulationMetrics getInstance(){
+        return instance;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, if they aren't registered yet.
+     */
+    public static synchronized void register(){
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if(!server.isRegistered(name)){
+                server.registerMBean(instance, name);
+            }
+        }
+        catch(JMException | SecurityException e){
+            // the metrics still work without JMX
+            Game.debug("Couldn't register " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    /**
+     * Records games that were played.
+     * @param games The number of games.
+     * @param nanos The time taken to play them.
+     */
+    void recordGames(int games, long nanos){
+        gamesPlayed.add(games);
+        gameNanos.add(nanos);
+        windowGames.add(games);
+
+        long now = System.nanoTime();
+        if(now - windowNanos >= RATE_WINDOW_NANOS){
+            endRateWindow(now);
+        }
+    }
+
+    /**
+     * Measures the rate of the current rate window and starts the next one, if the current one has ended.
+     */
+    private synchronized void endRateWindow(long now){
+        long elapsed = now - windowNanos;
+
+        if(elapsed >= RATE_WINDOW_NANOS){
+            windowRate = windowGames.sumThenReset() / (elapsed / 1e9);
+            windowNanos = now;
+        }
+    }
+
+    /**
+     * Records the time taken by a sampled game, and by its phases.
+     * @param nanos The time taken to play the game.
+     * @param mulliganNanos The time spent on mulligans.
+     * @param findBestPlayNanos The time spent finding the best play.
+     * @param attackNanos The time spent attacking.
+     */
+    void recordSample(long nanos, long mulliganNanos, long findBestPlayNanos, long attackNanos){
+        latencyBuckets[getBucket(nanos)].increment();
+        recordPhases(1, mulliganNanos, findBestPlayNanos, attackNanos);
+    }
+
+    /**
+     * Records a sampled batch of games played together. Its time per game is a batch latency, not a game latency,
+     * since the games were played in lockstep.
+     * @param games The number of games in the batch.
+     * @param nanos The time taken to play the whole batch.
+     * @param mulliganNanos The time spent on mulligans by the whole batch.
+     * @param findBestPlayNanos The time spent finding the best play by the whole batch.
+     * @param attackNanos The time spent attacking by the whole batch.
+     */
+    void recordSamples(int games, long nanos, long mulliganNanos, long findBestPlayNanos, long attackNanos){
+        batchLatencyBuckets[getBucket(nanos / games)].increment();
+        recordPhases(games, mulliganNanos, findBestPlayNanos, attackNanos);
+    }
+
+    private void recordPhases(int games, long mulliganNanos, long findBestPlayNanos, long attackNanos){
+        sampledGames.add(games);
+        phaseNanos[Phase.Mulligan.ordinal()].add(mulliganNanos);
+        phaseNanos[Phase.FindBestPlay.ordinal()].add(findBestPlayNanos);
+        phaseNanos[Phase.Attack.ordinal()].add(attackNanos);
+    }
+
+    /**
+     * Records a generation that was evaluated.
+     * @param nanos The time taken to evaluate the generation.
+     * @param best The average win turn of the best deck.
+     * @param median The average win turn of the median deck.
+     * @param fitnessCache The generation's fitness cache, or null if it has none.
+     */
+    void recordEvaluation(long nanos, double best, double median, FitnessCache fitnessCache){
+        generationsEvaluated.increment();
+        evaluationNanos.add(nanos);
+        lastEvaluationNanos = nanos;
+        bestAverageWinTurn = best;
+        medianAverageWinTurn = median;
+        fitnessCacheHitRate = fitnessCache == null ? 0 : fitnessCache.getHitRate();
+    }
+
+    /**
+     * Records a generation that was bred.
+     * @param nanos The time taken to breed the generation.
+     */
+    void recordBreeding(long nanos){
+        generationsBred.increment();
+        breedingNanos.add(nanos);
+        lastBreedingNanos = nanos;
+    }
+
+    private static int getBucket(long nanos){
+        if(nanos < SUB_BUCKETS){
+            return (int) Math.max(0, nanos);
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The largest latency in a bucket, in nanoseconds.
+     */
+    private static long getBucketLimit(int bucket){
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long start = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+
+        return start + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Gets a percentile of the sampled times of single games, played by Game.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The percentile in nanoseconds, rounded up to the end of its bucket, or 0 if no games were sampled.
+     */
+    public long getGameLatencyPercentile(double percentile){
+        return getPercentile(latencyBuckets, percentile);
+    }
+
+    /**
+     * Gets a percentile of the sampled batches' times per game, played by BatchGame.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The percentile in nanoseconds, rounded up to the end of its bucket, or 0 if no batches were sampled.
+     */
+    public long getBatchLatencyPercentile(double percentile){
+        return getPercentile(batchLatencyBuckets, percentile);
+    }
+
+    private static long getPercentile(LongAdder[] buckets, double percentile){
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+
+        for(int i = 0; i < BUCKETS; i++){
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        if(total == 0){
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+
+            if(seen >= Math.max(1, rank)){
+                return getBucketLimit(i);
+            }
+        }
+
+        return getBucketLimit(BUCKETS - 1);
+    }
+
+    private double getPhaseMicrosPerGame(Phase phase){
+        long samples = sampledGames.sum();
+        return samples == 0 ? 0 : phaseNanos[phase.ordinal()].sum() / 1e3 / samples;
+    }
+
+    private static double getMean(LongAdder nanos, LongAdder count, double unit){
+        long n = count.sum();
+        return n == 0 ? 0 : nanos.sum() / unit / n;
+    }
+
+    @Override
+    public long getGamesPlayed(){
+        return gamesPlayed.sum();
+    }
+
+    @Override
+    public double getGamesPerSecond(){
+        long now = System.nanoTime();
+        if(now - windowNanos >= RATE_WINDOW_NANOS){
+            endRateWindow(now);
+        }
+
+        double rate = windowRate;
+        if(Double.isNaN(rate)){
+            double seconds = (now - windowNanos) / 1e9;
+            return seconds <= 0 ? 0 : windowGames.sum() / seconds;
+        }
+
+        return rate;
+    }
+
+    @Override
+    public double getMeanGameLatencyMicros(){
+        return getMean(gameNanos, gamesPlayed, 1e3);
+    }
+
+    @Override
+    public double getP99GameLatencyMicros(){
+        return getGameLatencyPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getP99BatchLatencyMicros(){
+        return getBatchLatencyPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getMulliganMicrosPerGame(){
+        return getPhaseMicrosPerGame(Phase.Mulligan);
+    }
+
+    @Override
+    public double getFindBestPlayMicrosPerGame(){
+        return getPhaseMicrosPerGame(Phase.FindBestPlay);
+    }
+
+    @Override
+    public double getAttackMicrosPerGame(){
+        return getPhaseMicrosPerGame(Phase.Attack);
+    }
+
+    @Override
+    public long getGenerationsEvaluated(){
+        return generationsEvaluated.sum();
+    }
+
+    @Override
+    public double getLastEvaluationMillis(){
+        return lastEvaluationNanos / 1e6;
+    }
+
+    @Override
+    public double getMeanEvaluationMillis(){
+        return getMean(evaluationNanos, generationsEvaluated, 1e6);
+    }
+
+    @Override
+    public double getLastBreedingMillis(){
+        return lastBreedingNanos / 1e6;
+    }
+
+    @Override
+    public double getMeanBreedingMillis(){
+        return getMean(breedingNanos, generationsBred, 1e6);
+    }
+
+    @Override
+    public double getFitnessCacheHitRate(){
+        return fitnessCacheHitRate;
+    }
+
+    @Override
+    public double getBestAverageWinTurn(){
+        return bestAverageWinTurn;
+    }
+
+    @Override
+    public double getMedianAverageWinTurn(){
+        return medianAverageWinTurn;
+    }
+
+    @Override
+    public synchronized void reset(){
+        gamesPlayed.reset();
+        gameNanos.reset();
+        sampledGames.reset();
+        for(LongAdder bucket : latencyBuckets){
+            bucket.reset();
+        }
+        for(LongAdder bucket : batchLatencyBuckets){
+            bucket.reset();
+        }
+        for(LongAdder phase : phaseNanos){
+            phase.reset();
+        }
+        generationsEvaluated.reset();
+        evaluationNanos.reset();
+        generationsBred.reset();
+        breedingNanos.reset();
+        lastEvaluationNanos = 0;
+        lastBreedingNanos = 0;
+        windowGames.reset();
+        windowRate = Double.NaN;
+        windowNanos = System.nanoTime();
+        startNanos = windowNanos;
+    }
+
+    /**
+     * @return The current values of the metrics.
+     */
+    public Snapshot snapshot(){
+        return new Snapshot(this);
+    }
+
+    /**
+     * Passes a snapshot of the metrics to a consumer every period, on a background thread, until the returned future
+     * is cancelled. Each snapshot's games per second is measured since the one before it.
+     * @param period The time between snapshots.
+     * @param unit The unit of the period.
+     * @param consumer Receives the snapshots.
+     * @return The future of the reports, which can be cancelled to stop them.
+     */
+    public synchronized ScheduledFuture<?> report(long period, TimeUnit unit, Consumer<Snapshot> consumer){
+        if(reporter == null){
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "goldfish-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Snapshot[] previous = {snapshot()};
+
+        return reporter.scheduleAtFixedRate(() -> {
+            Snapshot current = snapshot();
+            consumer.accept(current.since(previous[0]));
+            previous[0] = current;
+        }, period, period, unit);
+    }
+
+    /**
+     * The values of the metrics at one point in time.
+     */
+    public static final class Snapshot {
+        public final long nanoTime;
+        public final long gamesPlayed;
+        // games per second since the previous snapshot, or since the metrics were created or reset
+        public final double gamesPerSecond;
+        public final double meanGameLatencyMicros;
+        public final double p99GameLatencyMicros;
+        public final double p99BatchLatencyMicros;
+        public final double mulliganMicrosPerGame;
+        public final double findBestPlayMicrosPerGame;
+        public final double attackMicrosPerGame;
+        public final long generationsEvaluated;
+        public final double meanEvaluationMillis;
+        public final double meanBreedingMillis;
+        public final double fitnessCacheHitRate;
+        public final double bestAverageWinTurn;
+        public final double medianAverageWinTurn;
+
+        private Snapshot(SimulationMetrics metrics){
+            nanoTime = System.nanoTime();
+            gamesPlayed = metrics.getGamesPlayed();
+            double seconds = (nanoTime - metrics.startNanos) / 1e9;
+            gamesPerSecond = seconds <= 0 ? 0 : gamesPlayed / seconds;
+            meanGameLatencyMicros = metrics.getMeanGameLatencyMicros();
+            p99GameLatencyMicros = metrics.getP99GameLatencyMicros();
+            p99BatchLatencyMicros = metrics.getP99BatchLatencyMicros();
+            mulliganMicrosPerGame = metrics.getMulliganMicrosPerGame();
+            findBestPlayMicrosPerGame = metrics.getFindBestPlayMicrosPerGame();
+            attackMicrosPerGame = metrics.getAttackMicrosPerGame();
+            generationsEvaluated = metrics.getGenerationsEvaluated();
+            meanEvaluationMillis = metrics.getMeanEvaluationMillis();
+            meanBreedingMillis = metrics.getMeanBreedingMillis();
+            fitnessCacheHitRate = metrics.getFitnessCacheHitRate();
+            bestAverageWinTurn = metrics.getBestAverageWinTurn();
+            medianAverageWinTurn = metrics.getMedianAverageWinTurn();
+        }
+
+        private Snapshot(Snapshot current, double gamesPerSecond){
+            nanoTime = current.nanoTime;
+            gamesPlayed = current.gamesPlayed;
+            this.gamesPerSecond = gamesPerSecond;
+            meanGameLatencyMicros = current.meanGameLatencyMicros;
+            p99GameLatencyMicros = current.p99GameLatencyMicros;
+            p99BatchLatencyMicros = current.p99BatchLatencyMicros;
+            mulliganMicrosPerGame = current.mulliganMicrosPerGame;
+            findBestPlayMicrosPerGame = current.findBestPlayMicrosPerGame;
+            attackMicrosPerGame = current.attackMicrosPerGame;
+            generationsEvaluated = current.generationsEvaluated;
+            meanEvaluationMillis = current.meanEvaluationMillis;
+            meanBreedingMillis = current.meanBreedingMillis;
+            fitnessCacheHitRate = current.fitnessCacheHitRate;
+            bestAverageWinTurn = current.bestAverageWinTurn;
+            medianAverageWinTurn = current.medianAverageWinTurn;
+        }
+
+        /**
+         * Gets this snapshot with its games per second measured since an earlier snapshot, unless the metrics were
+         * reset after the earlier snapshot was taken.
+         * @param earlier The earlier snapshot.
+         * @return The snapshot.
+         */
+        public Snapshot since(Snapshot earlier){
+            if(gamesPlayed < earlier.gamesPlayed){
+                // the metrics were reset in between, so the rate since the reset is kept
+                return this;
+            }
+
+            double seconds = (nanoTime - earlier.nanoTime) / 1e9;
+            return new Snapshot(this, seconds <= 0 ? 0 : (gamesPlayed - earlier.gamesPlayed) / seconds);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("Games: %d (%.0f/s), latency mean %.1fus p99 %.1fus, batch latency p99 %.1fus, "
+                            + "per game: mulligan %.2fus findBestPlay %.2fus attack %.2fus, generations: %d "
+                            + "(evaluate %.1fms, breed %.2fms), cache hit rate %.1f%%, best %.3f, median %.3f",
+                    gamesPlayed, gamesPerSecond, meanGameLatencyMicros, p99GameLatencyMicros, p99BatchLatencyMicros,
+                    mulliganMicrosPerGame, findBestPlayMicrosPerGame, attackMicrosPerGame, generationsEvaluated,
+                    meanEvaluationMillis, meanBreedingMillis, fitnessCacheHitRate * 100, bestAverageWinTurn,
+                    medianAverageWinTurn);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * The JMX interface of SimulationMetrics. Every getter is a read-only attribute of the
+ * "goldfish:type=SimulationMetrics" MBean.
+ */
+public interface SimulationMetricsMBean {
+
+    /**
+     * @return The number of games played.
+     */
+    long getGamesPlayed();
+
+    /**
+     * @return The games played per second over the last whole window of five seconds, or since the metrics were
+     *     created or reset if no window has ended yet.
+     */
+    double getGamesPerSecond();
+
+    /**
+     * @return The mean time to play a game, in microseconds.
+     */
+    double getMeanGameLatencyMicros();
+
+    /**
+     * @return The 99th percentile of the sampled times of single games, played without batch evaluation, in
+     *     microseconds.
+     */
+    double getP99GameLatencyMicros();
+
+    /**
+     * @return The 99th percentile of the sampled batches' times per game, played with batch evaluation, in
+     *     microseconds. A batch's games are played in lockstep, so this is the time of a batch, not of a game.
+     */
+    double getP99BatchLatencyMicros();
+
+    /**
+     * @return The mean time spent on mulligans per sampled game, in microseconds.
+     */
+    double getMulliganMicrosPerGame();
+
+    /**
+     * @return The mean time spent finding the best play per sampled game, in microseconds.
+     */
+    double getFindBestPlayMicrosPerGame();
+
+    /**
+     * @return The mean time spent attacking per sampled game, in microseconds.
+     */
+    double getAttackMicrosPerGame();
+
+    /**
+     * @return The number of generations evaluated.
+     */
+    long getGenerationsEvaluated();
+
+    /**
+     * @return The time taken to evaluate the last generation, in milliseconds.
+     */
+    double getLastEvaluationMillis();
+
+    /**
+     * @return The mean time taken to evaluate a generation, in milliseconds.
+     */
+    double getMeanEvaluationMillis();
+
+    /**
+     * @return The time taken to breed the last generation, in milliseconds.
+     */
+    double getLastBreedingMillis();
+
+    /**
+     * @return The mean time taken to breed a generation, in milliseconds.
+     */
+    double getMeanBreedingMillis();
+
+    /**
+     * @return The hit rate of the fitness cache used by the last generation evaluated, over every lookup it has
+     *     had, or 0 without a cache.
+     */
+    double getFitnessCacheHitRate();
+
+    /**
+     * @return The average win turn of the best deck of the last generation evaluated.
+     */
+    double getBestAverageWinTurn();
+
+    /**
+     * @return The average win turn of the median deck of the last generation evaluated.
+     */
+    double getMedianAverageWinTurn();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}